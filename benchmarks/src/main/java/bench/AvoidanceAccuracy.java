@@ -0,0 +1,95 @@
+package bench;
+
+import engine.AaCpmAvoidance;
+import engine.EngineOptions;
+import engine.FastAaCpmAvoidance;
+import engine.MovementStrategy;
+import engine.SimulationEngine;
+import model.Parameters;
+import model.ParticleStore;
+import space.CellGrid;
+import space.Geometry;
+
+import java.util.Arrays;
+
+/**
+ * Checks {@link FastAaCpmAvoidance} against {@link AaCpmAvoidance}: first the direction of
+ * every pedestrian of random crowds (random headings, so every branch of the rotation is
+ * taken), then the evacuation times of whole runs, which can only agree statistically.
+ * <pre>
+ * java --enable-preview -cp benchmarks/target/benchmarks.jar bench.AvoidanceAccuracy [tolerance] [runs]
+ * </pre>
+ */
+public final class AvoidanceAccuracy {
+
+    private AvoidanceAccuracy() {
+    }
+
+    public static void main(String[] args) {
+        double tolerance = args.length > 0 ? Double.parseDouble(args[0]) : FastAaCpmAvoidance.DEFAULT_TOLERANCE;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        Parameters p = Parameters.builder().seed(Scenarios.SEED).build();
+        Geometry geometry = Geometry.of(p);
+        MovementStrategy exact = MovementStrategy.EXACT.create(p, geometry);
+        MovementStrategy fast = FastAaCpmAvoidance.factory(tolerance).create(p, geometry);
+
+        System.out.printf("tolerance %.1e%n", tolerance);
+        System.out.println("density  pedestrians  max angle (rad)  mean angle (rad)  over 10*tolerance");
+        for (double density : new double[]{0.5, 1, 2, 4, 6}) {
+            compareDirections(p, exact, fast, density, tolerance);
+        }
+
+        System.out.println();
+        System.out.println("strategy  runs  mean evacuation (s)  sem (s)");
+        summariseRuns("exact", EngineOptions.serial(), runs);
+        summariseRuns("fast", EngineOptions.builder().fastAvoidance(tolerance).build(), runs);
+    }
+
+    private static void compareDirections(Parameters p, MovementStrategy exact, MovementStrategy fast,
+                                          double density, double tolerance) {
+        ParticleStore store = Scenarios.randomStore(p, density);
+        int n = store.size();
+        CellGrid grid = new CellGrid(p.corridorLength(), p.corridorWidth(), Scenarios.cellSize(p), n);
+        for (int i = 0; i < n; i++) {
+            grid.insert(i, store.x(i), store.y(i));
+        }
+        int[] neighbours = new int[64];
+        double[] a = new double[2], b = new double[2];
+        double max = 0, sum = 0;
+        int off = 0;
+        for (int i = 0; i < n; i++) {
+            int count = grid.neighbours(i, store.x(i), store.y(i), Double.POSITIVE_INFINITY, neighbours, 0);
+            if (count > neighbours.length) {
+                neighbours = Arrays.copyOf(neighbours, count);
+                grid.neighbours(i, store.x(i), store.y(i), Double.POSITIVE_INFINITY, neighbours, 0);
+            }
+            exact.desiredDirection(store, i, neighbours, 0, count, a);
+            fast.desiredDirection(store, i, neighbours, 0, count, b);
+            double angle = Math.abs(Math.atan2(a[0] * b[1] - a[1] * b[0], a[0] * b[0] + a[1] * b[1]));
+            max = Math.max(max, angle);
+            sum += angle;
+            if (angle > 10 * tolerance) {
+                off++;
+            }
+        }
+        System.out.printf("%7.1f  %11d  %15.3e  %16.3e  %17d%n", density, n, max, sum / n, off);
+    }
+
+    private static void summariseRuns(String name, EngineOptions options, int runs) {
+        double sum = 0, sumSq = 0;
+        for (int run = 0; run < runs; run++) {
+            Parameters p = Parameters.builder().inflow(8).seed(Scenarios.SEED + run).build();
+            SimulationEngine engine = new SimulationEngine(p, 20_000, options);
+            double time = 0;
+            for (long tick = 0; !engine.isFinished(); tick++) {
+                engine.step(tick, time);
+                time += p.dt();
+            }
+            sum += time;
+            sumSq += time * time;
+        }
+        double mean = sum / runs;
+        double sem = runs > 1 ? Math.sqrt((sumSq - runs * mean * mean) / (runs - 1) / runs) : Double.NaN;
+        System.out.printf("%-8s  %4d  %19.3f  %7.3f%n", name, runs, mean, sem);
+    }
+}
@@ -0,0 +1,83 @@
+package bench;
+
+import engine.FastAaCpmAvoidance;
+import engine.MovementStrategy;
+import model.Parameters;
+import model.ParticleStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import space.CellGrid;
+import space.Geometry;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// desiredDirection for every pedestrian of a crowd, with precomputed neighbourhoods.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class AvoidanceBenchmark {
+    @Param({"1000", "10000"})
+    int particles;
+
+    @Param({"1.0", "4.0"})
+    double density;
+
+    @Param({"exact", "fast"})
+    String strategy;
+
+    private ParticleStore store;
+    private MovementStrategy movement;
+    private int[][] neighbours;
+    private final double[] direction = new double[2];
+
+    @Setup
+    public void setUp() {
+        Parameters p = Scenarios.parameters(particles, density);
+        store = Scenarios.store(particles, density);
+        movement = (strategy.equals("fast") ? FastAaCpmAvoidance.factory(FastAaCpmAvoidance.DEFAULT_TOLERANCE)
+                : MovementStrategy.EXACT).create(p, Geometry.of(p));
+        CellGrid grid = new CellGrid(p.corridorLength(), p.corridorWidth(), Scenarios.cellSize(p), particles);
+        for (int i = 0; i < store.size(); i++) {
+            grid.insert(i, store.x(i), store.y(i));
+        }
+        neighbours = new int[store.size()][];
+        int[][] found = {new int[16]};
+        int[] count = {0};
+        for (int i = 0; i < store.size(); i++) {
+            int self = i;
+            count[0] = 0;
+            grid.forEachNeighbour(store.x(i), store.y(i), j -> {
+                if (j != self) {
+                    if (count[0] == found[0].length) {
+                        found[0] = Arrays.copyOf(found[0], count[0] * 2);
+                    }
+                    found[0][count[0]++] = j;
+                }
+            });
+            neighbours[i] = Arrays.copyOf(found[0], count[0]);
+        }
+    }
+
+    @Benchmark
+    public double desiredDirection() {
+        double sum = 0;
+        for (int i = 0; i < store.size(); i++) {
+            movement.desiredDirection(store, i, neighbours[i], 0, neighbours[i].length, direction);
+            sum += direction[0];
+        }
+        return sum;
+    }
+}
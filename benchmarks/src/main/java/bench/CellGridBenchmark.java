@@ -0,0 +1,140 @@
+package bench;
+
+import model.Parameters;
+import model.ParticleStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import space.CellGrid;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class CellGridBenchmark {
+    @Param({"1000", "10000", "100000"})
+    int particles;
+
+    @Param({"1.0", "4.0"})
+    double density;
+
+    // SORTED also permutes the store into cell order once, as the engine does periodically.
+    @Param({"LINKED", "SORTED", "INCREMENTAL"})
+    CellGrid.Layout layout;
+
+    private ParticleStore store;
+    private CellGrid grid;
+    private final Counter counter = new Counter();
+    private int[] buffer = new int[256];
+    // x before and after one step at the pedestrians' velocity; update() alternates between them.
+    private final double[][] walked = new double[2][];
+    // Pedestrians update() placed in another cell, each followed by that cell.
+    private int[] movers;
+    private int ticks;
+
+    @Setup
+    public void setUp() {
+        Parameters p = Scenarios.parameters(particles, density);
+        store = Scenarios.store(particles, density);
+        grid = new CellGrid(p.corridorLength(), p.corridorWidth(), Scenarios.cellSize(p), particles, layout);
+        rebuild();
+        if (layout == CellGrid.Layout.SORTED) {
+            store.permute(grid.cellOrder());
+            rebuild();
+        }
+        walked[0] = new double[store.size()];
+        walked[1] = new double[store.size()];
+        for (int i = 0; i < store.size(); i++) {
+            walked[0][i] = store.x(i);
+            walked[1][i] = store.x(i) + store.vx(i) * p.dt();
+        }
+        movers = new int[2 * store.size()];
+    }
+
+    // reset(), one insert per particle and build(), as done every tick.
+    @Benchmark
+    public CellGrid rebuild() {
+        grid.reset();
+        for (int i = 0; i < store.size(); i++) {
+            grid.insert(i, store.x(i), store.y(i), store.id(i));
+        }
+        grid.build();
+        return grid;
+    }
+
+    /**
+     * Grid upkeep of a tick in which everyone took one step: LINKED and SORTED rebuild, INCREMENTAL
+     * places every pedestrian, as the motion pass does, and relinks the few that changed cell.
+     */
+    @Benchmark
+    public CellGrid update() {
+        double[] x = walked[ticks++ & 1];
+        if (layout != CellGrid.Layout.INCREMENTAL) {
+            grid.reset();
+            for (int i = 0; i < store.size(); i++) {
+                grid.insert(i, x[i], store.y(i), store.id(i));
+            }
+            grid.build();
+            return grid;
+        }
+        int moved = 0;
+        for (int i = 0; i < store.size(); i++) {
+            int cell = grid.place(i, x[i], store.y(i));
+            if (cell != -1) {
+                movers[moved++] = i;
+                movers[moved++] = cell;
+            }
+        }
+        for (int m = 0; m < moved; m += 2) {
+            grid.relink(movers[m], movers[m + 1]);
+        }
+        return grid;
+    }
+
+    // One 3x3 neighbourhood walk per particle; returns the number of candidates visited.
+    @Benchmark
+    public long forEachNeighbour() {
+        counter.count = 0;
+        for (int i = 0; i < store.size(); i++) {
+            grid.forEachNeighbour(store.x(i), store.y(i), counter);
+        }
+        return counter.count;
+    }
+
+    // Same walk through the index query into a reusable buffer, as the engine does it.
+    @Benchmark
+    public long neighbours() {
+        long total = 0;
+        for (int i = 0; i < store.size(); i++) {
+            int count = grid.neighbours(i, store.x(i), store.y(i), Double.POSITIVE_INFINITY, buffer, 0);
+            if (count > buffer.length) {
+                buffer = new int[count * 2];
+                count = grid.neighbours(i, store.x(i), store.y(i), Double.POSITIVE_INFINITY, buffer, 0);
+            }
+            total += count;
+        }
+        return total;
+    }
+
+    private static final class Counter implements IntConsumer {
+        long count;
+
+        @Override
+        public void accept(int value) {
+            count += value;
+        }
+    }
+}
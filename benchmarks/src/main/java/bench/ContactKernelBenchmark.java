@@ -0,0 +1,88 @@
+package bench;
+
+import engine.ContactKernel;
+import model.Parameters;
+import model.ParticleStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import space.CellGrid;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Contact tests of every pedestrian against its 3x3 neighbourhood, scalar vs SIMD lanes.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "--add-modules", "jdk.incubator.vector"})
+public class ContactKernelBenchmark {
+    @Param({"2.0", "6.0"})
+    double density;
+
+    @Param({"scalar", "vector"})
+    String kernel;
+
+    private ParticleStore store;
+    private ContactKernel contacts;
+    private int[] neighbours;
+    private int[] start;
+    private int[] out;
+
+    @Setup
+    public void setUp() {
+        Parameters p = Parameters.builder().corridor(200, 3.6).seed(Scenarios.SEED).build();
+        store = Scenarios.randomStore(p, density);
+        CellGrid grid = new CellGrid(p.corridorLength(), p.corridorWidth(), Scenarios.cellSize(p), store.size());
+        for (int i = 0; i < store.size(); i++) {
+            grid.insert(i, store.x(i), store.y(i));
+        }
+        start = new int[store.size() + 1];
+        neighbours = new int[1024];
+        int max = 0;
+        for (int i = 0; i < store.size(); i++) {
+            int count = grid.neighbours(i, store.x(i), store.y(i), Double.POSITIVE_INFINITY, neighbours, start[i]);
+            if (count > neighbours.length - start[i]) {
+                neighbours = Arrays.copyOf(neighbours, 2 * (start[i] + count));
+                grid.neighbours(i, store.x(i), store.y(i), Double.POSITIVE_INFINITY, neighbours, start[i]);
+            }
+            start[i + 1] = start[i] + count;
+            max = Math.max(max, count);
+        }
+        out = new int[max];
+        contacts = (kernel.equals("vector") ? ContactKernel.VECTOR : ContactKernel.SCALAR).create(p);
+        verifyAgainst(ContactKernel.SCALAR.create(p), max);
+    }
+
+    // The kernels must agree on every contact, not just on the totals.
+    private void verifyAgainst(ContactKernel reference, int max) {
+        int[] expected = new int[max];
+        for (int i = 0; i < store.size(); i++) {
+            int count = start[i + 1] - start[i];
+            int n = contacts.contacts(store, i, neighbours, start[i], count, out);
+            int m = reference.contacts(store, i, neighbours, start[i], count, expected);
+            if (!Arrays.equals(out, 0, n, expected, 0, m)) {
+                throw new IllegalStateException("Contact kernels disagree on particle " + i);
+            }
+        }
+    }
+
+    @Benchmark
+    public long contacts() {
+        long total = 0;
+        for (int i = 0; i < store.size(); i++) {
+            total += contacts.contacts(store, i, neighbours, start[i], start[i + 1] - start[i], out);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,72 @@
+package bench;
+
+import io.BinaryFrameWriter;
+import io.CsvFrameWriter;
+import io.FrameSink;
+import model.Parameters;
+import model.SimulationState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Frames per second each output format sustains for one crowd snapshot.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class FrameWriterBenchmark {
+    @Param({"200", "10000"})
+    int particles;
+
+    @Param({"csv", "binary32", "binary64", "binary64-deflate"})
+    String format;
+
+    private SimulationState state;
+    private Path file;
+    private FrameSink sink;
+
+    @Setup(Level.Trial)
+    public void setUpState() {
+        state = Scenarios.engine(particles, 2.0, engine.EngineOptions.serial()).snapshot();
+    }
+
+    @Setup(Level.Iteration)
+    public void open() throws IOException {
+        Parameters p = Scenarios.parameters(particles, 2.0);
+        file = Files.createTempFile("frames", "." + format);
+        sink = switch (format) {
+            case "csv" -> new CsvFrameWriter(file.toString(), p.dt(), p.dt());
+            case "binary32" -> new BinaryFrameWriter(file, p.dt(), p.dt(), BinaryFrameWriter.Precision.FLOAT32);
+            case "binary64" -> new BinaryFrameWriter(file, p.dt(), p.dt(), BinaryFrameWriter.Precision.FLOAT64);
+            default -> new BinaryFrameWriter(file, p.dt(), p.dt(), BinaryFrameWriter.Precision.FLOAT64, true);
+        };
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws IOException {
+        sink.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void writeFrame() throws IOException {
+        sink.writeFrame(state);
+    }
+}
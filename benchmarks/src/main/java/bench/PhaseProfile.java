@@ -0,0 +1,40 @@
+package bench;
+
+import engine.EngineOptions;
+import engine.SimulationEngine;
+import profile.TickProfiler;
+
+/**
+ * Shows how the phases of a tick grow with the particle count: steps the benchmark crowds
+ * of each size with a {@link TickProfiler} and prints one summary per size, after a warm-up
+ * that is profiled but not reported.
+ * <pre>
+ * java --enable-preview -cp benchmarks/target/benchmarks.jar bench.PhaseProfile [density] [ticks]
+ * </pre>
+ * Run it under {@code -XX:StartFlightRecording} to get the per-tick JFR events as well.
+ */
+public final class PhaseProfile {
+
+    private PhaseProfile() {
+    }
+
+    public static void main(String[] args) {
+        double density = args.length > 0 ? Double.parseDouble(args[0]) : 2;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        for (int n : new int[]{200, 1_000, 10_000, 100_000}) {
+            System.out.printf("%d particles, density %.1f%n", n, density);
+            boolean[] warm = {false};
+            TickProfiler profiler = new TickProfiler(ticks, s -> {
+                if (warm[0]) {
+                    System.out.println(s);
+                }
+                warm[0] = true;
+            });
+            SimulationEngine engine = Scenarios.engine(n, density, EngineOptions.builder().profiler(profiler).build());
+            for (int k = 0; k < 2 * ticks; k++) {
+                engine.step(engine.nextTick(), engine.nextTime());
+            }
+            profiler.flush();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package bench;
+
+import engine.DecomposedEngine;
+import engine.EngineOptions;
+import engine.SimulationEngine;
+import engine.SplitMixRandom;
+import model.Parameters;
+import model.ParticleStore;
+
+/**
+ * Seeded crowds for the benchmarks: n pedestrians on a lattice of the given density in a
+ * 3.6 m wide corridor just long enough to hold them. Half of them walk each way.
+ * They are added in random order, as a long-running simulation mixes its store.
+ */
+final class Scenarios {
+    static final long SEED = 42;
+    static final double WIDTH = 3.6;
+
+    private Scenarios() {
+    }
+
+    static Parameters parameters(int n, double density) {
+        double rMin = Parameters.builder().build().rMin();
+        int columns = (n + rows(density, rMin) - 1) / rows(density, rMin);
+        return Parameters.builder()
+                .corridor(Math.max(16, columns * spacing(density)), WIDTH)
+                .inflow(0)
+                .seed(SEED)
+                .build();
+    }
+
+    static SimulationEngine engine(int n, double density, EngineOptions options) {
+        Parameters p = parameters(n, density);
+        SimulationEngine engine = new SimulationEngine(p, n, options);
+        place(p, n, density, (x, y, goal) -> engine.addPedestrian(x, y, goal * p.vMax(), 0, goal));
+        return engine;
+    }
+
+    static DecomposedEngine decomposed(int n, double density, int slabs, EngineOptions options) {
+        Parameters p = parameters(n, density);
+        DecomposedEngine engine = new DecomposedEngine(p, slabs, options);
+        place(p, n, density, (x, y, goal) -> engine.addPedestrian(x, y, goal * p.vMax(), 0, goal));
+        return engine;
+    }
+
+    static ParticleStore store(int n, double density) {
+        Parameters p = parameters(n, density);
+        ParticleStore store = new ParticleStore(n);
+        int[] id = {0};
+        place(p, n, density, (x, y, goal) -> store.add(id[0]++, x, y, goal * p.vMax(), 0, p.rMax(), goal, goal > 0 ? 0 : 16));
+        return store;
+    }
+
+    /**
+     * Uniformly scattered crowd of the given density in the default 16 m corridor, with random
+     * headings and speeds and mixed radii, so that every branch of the contact and avoidance
+     * rules gets exercised.
+     */
+    static ParticleStore randomStore(Parameters p, double density) {
+        int n = (int) (density * p.corridorLength() * p.corridorWidth());
+        SplitMixRandom rng = new SplitMixRandom(SEED);
+        ParticleStore store = new ParticleStore(n);
+        for (int k = 0; k < n; k++) {
+            double heading = rng.nextDouble(-Math.PI, Math.PI);
+            double speed = rng.nextDouble(0, p.vMax());
+            double radius = rng.nextBoolean() ? p.rMin() : rng.nextDouble(p.rMin(), p.rMax());
+            int goal = rng.nextBoolean() ? 1 : -1;
+            store.add(k, rng.nextDouble(0, p.corridorLength()), rng.nextDouble(p.rMin(), p.corridorWidth() - p.rMin()),
+                    speed * Math.cos(heading), speed * Math.sin(heading), radius, goal, goal > 0 ? 0 : 16);
+        }
+        return store;
+    }
+
+    // Cell size the engine uses for its grid.
+    static double cellSize(Parameters p) {
+        return 2 * p.rMax() + p.vMax() * p.dt();
+    }
+
+    interface Placement {
+        void place(double x, double y, int goalSign);
+    }
+
+    private static double spacing(double density) {
+        return Math.sqrt(1 / density);
+    }
+
+    private static int rows(double density, double rMin) {
+        return Math.max(1, (int) ((WIDTH - 2 * rMin) / spacing(density)));
+    }
+
+    // Jittered lattice, so nobody starts on top of someone else.
+    private static void place(Parameters p, int n, double density, Placement placement) {
+        SplitMixRandom rng = new SplitMixRandom(SEED);
+        int[] slots = new int[n];
+        for (int k = 0; k < n; k++) {
+            slots[k] = k;
+        }
+        for (int k = n - 1; k > 0; k--) {
+            int other = rng.nextInt(k + 1);
+            int t = slots[k];
+            slots[k] = slots[other];
+            slots[other] = t;
+        }
+        double spacing = spacing(density);
+        int rows = rows(density, p.rMin());
+        double rowStep = (WIDTH - 2 * p.rMin()) / rows;
+        for (int k = 0; k < n; k++) {
+            int col = slots[k] / rows, row = slots[k] % rows;
+            double x = (col + 0.5) * spacing + rng.nextDouble(-0.1, 0.1) * spacing;
+            double y = p.rMin() + (row + 0.5) * rowStep + rng.nextDouble(-0.1, 0.1) * rowStep;
+            placement.place(x, y, (k & 1) == 0 ? 1 : -1);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package bench;
+
+import engine.DecomposedEngine;
+import engine.EngineOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// One DecomposedEngine.step on the crowds of StepBenchmark, whose corridors grow with n.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class SlabBenchmark {
+    @Param({"10000", "100000"})
+    int particles;
+
+    @Param({"1.0", "4.0"})
+    double density;
+
+    @Param({"1", "4", "16"})
+    int slabs;
+
+    @Param({"serial", "parallel"})
+    String mode;
+
+    private DecomposedEngine engine;
+    private long tick;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        EngineOptions.Builder options = EngineOptions.builder();
+        if (mode.equals("parallel")) {
+            options.parallel();
+        }
+        engine = Scenarios.decomposed(particles, density, slabs, options.build());
+        tick = 0;
+    }
+
+    @Benchmark
+    public int step() {
+        engine.step(tick, 0);
+        tick++;
+        return engine.particleCount();
+    }
+}
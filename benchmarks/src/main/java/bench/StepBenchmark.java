@@ -0,0 +1,87 @@
+package bench;
+
+import engine.EngineOptions;
+import engine.SimulationEngine;
+import engine.SplitMixRandom;
+import model.Parameters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full SimulationEngine.step on a seeded crowd, rebuilt every iteration. Everyone who
+ * leaves walks back in at an entrance, so the population stays at {@code particles} but
+ * for the few exits of the last tick, which are only removed at the start of the next.
+ * Each variant changes one option of the serial default, or two for parallel+sorted,
+ * where reordering pays off.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class StepBenchmark {
+    @Param({"1000", "100000"})
+    int particles;
+
+    @Param({"1.0", "4.0"})
+    double density;
+
+    @Param({"default", "parallel", "parallel+sorted", "incremental"})
+    String variant;
+
+    static final int REORDER_INTERVAL = 20;
+
+    private SimulationEngine engine;
+    private Parameters params;
+    private SplitMixRandom rng;
+    private long tick;
+    private int entering;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        EngineOptions.Builder options = EngineOptions.builder();
+        switch (variant) {
+            case "parallel" -> options.parallel();
+            case "parallel+sorted" -> options.parallel().cellOrdered(REORDER_INTERVAL);
+            case "incremental" -> options.incrementalGrid();
+            default -> {
+            }
+        }
+        engine = Scenarios.engine(particles, density, options.build());
+        params = engine.parameters();
+        rng = new SplitMixRandom(Scenarios.SEED);
+        tick = 0;
+        entering = 1;
+    }
+
+    @Benchmark
+    public int step() {
+        engine.step(tick, 0);
+        tick++;
+        reenter();
+        return engine.particleCount();
+    }
+
+    // Tops the crowd up at the entrances, alternately left and right, at random heights.
+    private void reenter() {
+        double r = params.rMax();
+        for (int k = engine.particleCount(); k < particles; k++) {
+            double x = entering > 0 ? r : params.corridorLength() - r;
+            engine.addPedestrian(x, rng.nextDouble(r, params.corridorWidth() - r), entering * params.vMax(), 0, entering);
+            entering = -entering;
+        }
+    }
+}
@@ -1,84 +1,111 @@
 package engine;
 
-import model.Particle;
-import model.Vector2D;
-
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
-import java.util.Vector;
+import model.ParticleStore;
+import space.Geometry;
 
 public final class AaCpmAvoidance implements MovementStrategy {
     private final double A_p, B_p;
     private final double A_w, B_w;
-    private final double W;
+    private final Geometry geometry;
 
-    public AaCpmAvoidance(double A_p, double B_p, double A_w, double B_w, double W) {
+    public AaCpmAvoidance(double A_p, double B_p, double A_w, double B_w, Geometry geometry) {
         this.A_p = A_p;
         this.B_p = B_p;
         this.A_w = A_w;
         this.B_w = B_w;
-        this.W = W;
+        this.geometry = geometry;
     }
 
 
     @Override
-    public Vector2D desiredDirection(Particle p_i, List<Particle> neighbors) {
-        // Desired (target) direction e_t
-        double goalSign = p_i.goalSign();
-        Vector2D target = Vector2D.of(goalSign > 0 ? 16 : 0, p_i.pos().y());
-        Vector2D e_t = target.sub(p_i.pos()).normalised();
-        Vector2D sum_n_jc = Vector2D.zero();
+    public void desiredDirection(ParticleStore s, int i, int[] neighbours, int start, int count, double[] out) {
+        double xi = s.x(i), yi = s.y(i);
+        // Desired (target) direction e_t; 'out' is scratch until the result goes in.
+        geometry.targetDirection(xi, yi, s.goalSign(i), out);
+        double etx = out[0], ety = out[1];
+        double sumX = 0.0, sumY = 0.0;
 
-        Vector2D v_i = p_i.vel();
-        List<Particle> neighborsByDistance =neighbors.stream().filter(p->isFrontalParticle(p_i,p)).sorted(Comparator.comparingDouble(p->p.pos().distance(p_i.pos()))).toList();
+        // The two nearest frontal neighbours; ties keep neighbour order.
+        int first = -1, second = -1;
+        double dFirst = Double.POSITIVE_INFINITY, dSecond = Double.POSITIVE_INFINITY;
+        for (int k = start; k < start + count; k++) {
+            int j = neighbours[k];
+            if (!isFrontalParticle(s, i, j, etx, ety)) {
+                continue;
+            }
+            double rx = s.x(j) - xi, ry = s.y(j) - yi;
+            double d = Math.sqrt(rx * rx + ry * ry);
+            if (d < dFirst) {
+                second = first;
+                dSecond = dFirst;
+                first = j;
+                dFirst = d;
+            } else if (d < dSecond) {
+                second = j;
+                dSecond = d;
+            }
+        }
 
-        for (Particle p_j : neighborsByDistance.subList(0,Math.min(2,neighborsByDistance.size()))) {
-            Vector2D r_ij = p_j.pos().sub(p_i.pos());
-            double d = r_ij.length();
+        for (int n = 0; n < 2; n++) {
+            int j = n == 0 ? first : second;
+            if (j < 0) {
+                break;
+            }
+            double d = n == 0 ? dFirst : dSecond;
             if (d == 0.0) throw new ArithmeticException("Overlapping particles");
 
-            Vector2D v_ij = p_j.vel().sub(v_i);
-            Vector2D e_ij = p_i.pos().sub(p_j.pos()).normalised();
-            double Beta = getAngle(v_ij,e_t);
-            // Consider only frontal 180° (cos β < 0)
-            Vector2D e_ij_c;
-            if (v_ij.length()==0||Math.abs(Beta) <Math.PI/2) {
-                e_ij_c = Vector2D.zero();
+            double vijX = s.vx(j) - s.vx(i), vijY = s.vy(j) - s.vy(i);
+            double vijLen = Math.sqrt(vijX * vijX + vijY * vijY);
+            double ex = xi - s.x(j), ey = yi - s.y(j);
+            double eLen = Math.sqrt(ex * ex + ey * ey);
+            if (eLen != 0.0) {
+                ex = ex / eLen;
+                ey = ey / eLen;
             }
-            else {
-                double dot = e_ij.dot(v_ij) / v_ij.length();
-                double det = e_ij.cross(v_ij) / v_ij.length();
+            double Beta = getAngle(vijX, vijY, etx, ety);
+            // Consider only frontal 180° (cos β < 0)
+            double ecX, ecY;
+            if (vijLen == 0 || Math.abs(Beta) < Math.PI / 2) {
+                ecX = 0.0;
+                ecY = 0.0;
+            } else {
+                double dot = (ex * vijX + ey * vijY) / vijLen;
+                double det = (ex * vijY - ey * vijX) / vijLen;
                 double alpha = Math.atan2(det, dot);
                 double fa = Math.abs(Math.abs(alpha) - Math.PI / 2);
-                e_ij_c = e_ij.rotate(-Math.signum(alpha) * fa);
+                double angle = -Math.signum(alpha) * fa;
+                double cos = Math.cos(angle);
+                double sin = Math.sin(angle);
+                ecX = cos * ex - sin * ey;
+                ecY = sin * ex + cos * ey;
             }
             double w_j = A_p * Math.exp(-d / B_p);
-            sum_n_jc=sum_n_jc.add(e_ij_c.mul(w_j));
+            sumX = sumX + ecX * w_j;
+            sumY = sumY + ecY * w_j;
         }
 
-        // Wall repulsion n_wc
-        double dBottom = p_i.pos().y();
-        boolean closerToBottom = dBottom < W - dBottom;
-        Vector2D w = Vector2D.of(p_i.pos().x(), closerToBottom ? 0.0 : W);
-        Vector2D ei_w = w.sub(p_i.pos()).normalised();
-        double d_iw = closerToBottom ? dBottom : W - dBottom;
-        Vector2D n_wc = ei_w.mul(A_w * Math.exp(-d_iw / B_w));
+        // Wall repulsion n_wc, from the nearest wall
+        double d_iw = geometry.nearestWall(xi, yi, out);
+        double eiwX = out[0], eiwY = out[1];
+        double wallWeight = A_w * Math.exp(-d_iw / B_w);
 
-        return e_t.add(sum_n_jc).add(n_wc).normalised(); // e_a
+        double ax = etx + sumX + eiwX * wallWeight;
+        double ay = ety + sumY + eiwY * wallWeight;
+        double aLen = Math.sqrt(ax * ax + ay * ay);
+        out[0] = aLen == 0.0 ? ax : ax / aLen; // e_a
+        out[1] = aLen == 0.0 ? ay : ay / aLen;
     }
-    public boolean isFrontalParticle(Particle pi, Particle pj) {
-        double x = pi.pos().x();
-        boolean isGoingRight = pi.goalSign()==1;
-        if (isGoingRight) {
-            return pj.pos().x() >= x;
-        }
-        return pj.pos().x() <= x;
+
+    // Whether j is ahead of i along i's target direction (etx, ety), or level with it.
+    public boolean isFrontalParticle(ParticleStore s, int i, int j, double etx, double ety) {
+        return (s.x(j) - s.x(i)) * etx + (s.y(j) - s.y(i)) * ety >= 0;
     }
-    public double getAngle(Vector2D v,Vector2D u) {
-        double dot = v.dot(u);
-        double norm1 = u.length();
-        double norm2 = v.length();
+
+    // Angle between v and u.
+    public double getAngle(double vx, double vy, double ux, double uy) {
+        double dot = vx * ux + vy * uy;
+        double norm1 = Math.sqrt(ux * ux + uy * uy);
+        double norm2 = Math.sqrt(vx * vx + vy * vy);
         double cos = Math.max(-1, Math.min(dot / (norm1 * norm2), 1));
         return Math.acos(cos);
     }
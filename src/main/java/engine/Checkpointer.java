@@ -0,0 +1,40 @@
+package engine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Writes a rolling checkpoint of an engine every {@code interval} ticks, replacing the
+ * previous one. Used like a {@link io.FrameSink}: ask {@link #isDue(long)} after each step.
+ */
+public final class Checkpointer {
+    private final Path path;
+    private final long interval;
+
+    public Checkpointer(Path path, long interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+        this.path = path;
+        this.interval = interval;
+    }
+
+    // Ticks are counted from 0, so the first checkpoint follows tick interval - 1.
+    public boolean isDue(long tick) {
+        return (tick + 1) % interval == 0;
+    }
+
+    public void write(SimulationEngine engine) throws IOException {
+        engine.checkpoint(path);
+    }
+
+    public void writeIfDue(SimulationEngine engine, long tick) throws IOException {
+        if (isDue(tick)) {
+            write(engine);
+        }
+    }
+
+    public Path path() {
+        return path;
+    }
+}
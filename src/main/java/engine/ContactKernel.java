@@ -0,0 +1,64 @@
+package engine;
+
+import model.Parameters;
+import model.ParticleStore;
+
+/**
+ * Contact test of the engine: which neighbours of particle {@code i} it is colliding with
+ * (overlap, and for a particle above rMin, inside the strip ahead of it).
+ * <p>
+ * A kernel instance belongs to one chunk of the engine, so it may keep scratch buffers,
+ * and every implementation must return exactly what {@link #SCALAR} returns.
+ */
+public interface ContactKernel {
+
+    /**
+     * Writes the store indices of the neighbours in {@code neighbours[start..start + count)} that
+     * particle {@code i} is in contact with into {@code out}, in neighbour order, and returns
+     * how many there are. {@code out} must have room for {@code count} entries.
+     */
+    int contacts(ParticleStore particles, int i, int[] neighbours, int start, int count, int[] out);
+
+    // Whether particle i is in contact with any of the neighbours.
+    default boolean anyContact(ParticleStore particles, int i, int[] neighbours, int start, int count, int[] scratch) {
+        return contacts(particles, i, neighbours, start, count, scratch) > 0;
+    }
+
+    @FunctionalInterface
+    interface Factory {
+        ContactKernel create(Parameters p);
+    }
+
+    Factory SCALAR = p -> new ScalarContactKernel(p.rMin());
+
+    /**
+     * {@code jdk.incubator.vector} kernel. Only usable when the JVM was started with
+     * {@code --add-modules jdk.incubator.vector}; see {@link #vectorAvailable()}.
+     */
+    Factory VECTOR = p -> {
+        if (!vectorAvailable()) {
+            throw new IllegalStateException("Start the JVM with --add-modules jdk.incubator.vector");
+        }
+        return loadVectorKernel(p.rMin());
+    };
+
+    static boolean vectorAvailable() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+
+    // The vector kernel if its module is present, the scalar one otherwise.
+    static Factory best() {
+        return vectorAvailable() ? VECTOR : SCALAR;
+    }
+
+    // Reflective so that nothing links against the incubator module unless it was added.
+    private static ContactKernel loadVectorKernel(double rMin) {
+        try {
+            return (ContactKernel) Class.forName("engine.VectorContactKernel")
+                    .getDeclaredConstructor(double.class)
+                    .newInstance(rMin);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot load the vector contact kernel", e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package engine;
+
+import model.Parameters;
+import model.ParticleStore;
+import space.Geometry;
+
+/**
+ * Where pedestrians enter and leave the corridor: the inflow accumulators and spawn
+ * counters of both ends, and the exit rule. Shared by SimulationEngine and
+ * {@link DecomposedEngine}, which draw the same spawns from the same random stream.
+ */
+final class CorridorEnds {
+    // Entrance markers stored as a particle's 'begin'.
+    static final int LEFT = 0;
+    static final int RIGHT = 16;
+    private final Geometry geometry;
+    double countL = 0, countR = 0;
+    int spawnedLeft = 0;
+    int spawnedRight = 0;
+
+    CorridorEnds(Geometry geometry) {
+        this.geometry = geometry;
+    }
+
+    // Receives every spawned pedestrian, to give it an id and store it.
+    @FunctionalInterface
+    interface Entrance {
+        void enter(double x, double y, double vx, double radius, int goalSign, int begin);
+    }
+
+    /**
+     * Adds inflow over {@code dt} to both accumulators and spawns their whole part,
+     * left side first, up to {@link Parameters#spawnLimitPerSide()}. With an
+     * {@code admission}, a spawn it rejects ends that side's spawning for the tick and
+     * stays in the accumulator, so blocked pedestrians queue up at the entrance.
+     */
+    void spawn(Parameters params, double dt, SplitMixRandom rng, Entrance entrance, SpawnAdmission admission) {
+        if (admission != null) {
+            double inflowPerTick = params.inflowPerSide() * dt;
+            countL = admit(params, countL + inflowPerTick, +params.vMax(), LEFT, rng, entrance, admission);
+            countR = admit(params, countR + inflowPerTick, -params.vMax(), RIGHT, rng, entrance, admission);
+            return;
+        }
+
+        // Calculate the expected number of particles to spawn per side this tick; the
+        // step length is only known once they are placed, so they cover the previous step.
+        double inflowPerTick = params.inflowPerSide() * dt;
+        countL += inflowPerTick;
+        countR += inflowPerTick;
+
+        int spawnLeftCount = (int) countL;
+        countL -= spawnLeftCount;
+        for (int i = 0; i < spawnLeftCount; i++) {
+            if (spawnedLeft < params.spawnLimitPerSide()) {
+                initParticle(params, +params.vMax(), LEFT, rng, entrance);
+            }
+        }
+
+        int spawnRightCount = (int) countR;
+        countR -= spawnRightCount;
+        for (int i = 0; i < spawnRightCount; i++) {
+            if (spawnedRight < params.spawnLimitPerSide()) {
+                initParticle(params, -params.vMax(), RIGHT, rng, entrance);
+            }
+        }
+        spawnedRight += spawnRightCount;
+        spawnedLeft += spawnLeftCount;
+    }
+
+    // Spawns the whole part of 'count' at one end while admitted; returns what is left of it.
+    private double admit(Parameters params, double count, double vx, int begin, SplitMixRandom rng,
+                         Entrance entrance, SpawnAdmission admission) {
+        int limit = params.spawnLimitPerSide();
+        while (count >= 1) {
+            int spawned = begin == LEFT ? spawnedLeft : spawnedRight;
+            if (spawned >= limit) {
+                // Nobody left to spawn at this end: drop the inflow rather than queue it.
+                return count - Math.floor(count);
+            }
+            double y = geometry.spawnY(begin == LEFT, rng), x = spawnX(params, vx, rng);
+            if (!admission.admit(x, y, params.rMax())) {
+                break;
+            }
+            entrance.enter(x, y, vx, params.rMax(), vx > 0 ? 1 : -1, begin);
+            if (begin == LEFT) {
+                spawnedLeft++;
+            } else {
+                spawnedRight++;
+            }
+            count--;
+        }
+        return count;
+    }
+
+    private void initParticle(Parameters params, double vx, int begin, SplitMixRandom rng, Entrance entrance) {
+        double y = geometry.spawnY(begin == LEFT, rng);
+        double x = spawnX(params, vx, rng);
+        int goalSign = vx > 0 ? 1 : -1;
+        entrance.enter(x, y, vx, params.rMax(), goalSign, begin);
+    }
+
+    // Spawn just outside, slide in next tick.
+    private static double spawnX(Parameters params, double vx, SplitMixRandom rng) {
+        double L = params.corridorLength();
+        return vx > 0 ? rng.nextDouble(-0.5,0) : rng.nextDouble(L,L+0.5);
+    }
+
+    static boolean hasExited(ParticleStore particles, int i, double L) {
+        int begin = particles.begin(i);
+        double x = particles.x(i);
+        return begin == LEFT && x >= L || begin == RIGHT && x <= 0;
+    }
+
+    static boolean isFinished(Parameters params, int exitedLeft, int exitedRight) {
+        return exitedRight >= params.exitsPerSide() && exitedLeft >= params.exitsPerSide();
+    }
+}
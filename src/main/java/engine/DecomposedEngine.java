@@ -0,0 +1,241 @@
+package engine;
+
+import model.Parameters;
+import model.Particle;
+import model.SimulationState;
+import space.CellGrid;
+import space.Geometry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * The model of {@link SimulationEngine} on a corridor split along x into slabs of whole
+ * grid columns, each with its own grid and particle store, for corridors far longer than
+ * wide. Slabs step concurrently on the pool of the {@link EngineOptions}, one task per slab.
+ * <p>
+ * Every tick, pedestrians that crossed into another slab's columns are handed over to it,
+ * and every slab receives a halo: copies of the column on either side of its own, which
+ * is all the 3×3 neighbourhood of its pedestrians reaches. A second, radius-only exchange
+ * after the radius pass keeps the halo in step for the motion pass. Cells order their
+ * particles by id, so neighbour lists and every sum over them come out as in the undivided
+ * corridor: any number of slabs gives the trajectories of {@link SimulationEngine}, bit for bit.
+ * <p>
+ * Spawns are drawn centrally from one random stream and placed in the slab they land in.
+ * Observers, checkpoints, cell reordering, adaptive time stepping and the profiler are
+ * not supported here; the grid layout option is ignored, slabs always sort their cells.
+ */
+public final class DecomposedEngine {
+    private final Parameters params;
+    private final double L, W, cellSize;
+    private final int columns;
+    private final Slab[] slabs;
+    // Slab owning each grid column.
+    private final int[] slabOfColumn;
+    private final ForkJoinPool pool;
+    private final SplitMixRandom rng;
+    private final CorridorEnds ends;
+    private final CorridorEnds.Entrance entrance = this::enter;
+    private final SpawnAdmission admission;
+    private long tick = -1;
+    private double time;
+    private long nextTick = 0;
+    private double nextTime = 0;
+    private boolean exitedPending = false;
+    private int nextId = 0;
+    private int pedestriansExitLeft = 0;
+    private int pedestriansExitRight = 0;
+
+    /**
+     * @param slabs number of slabs, at most one per grid column; columns are shared out evenly
+     */
+    public DecomposedEngine(Parameters params, int slabs, EngineOptions options) {
+        if (options.reorders() || options.maxDt() > params.dt() || options.profiler() != null) {
+            throw new IllegalArgumentException(
+                    "DecomposedEngine supports neither cell reordering, adaptive time stepping nor a profiler");
+        }
+        this.params = params;
+        this.L = params.corridorLength();
+        this.W = params.corridorWidth();
+        this.cellSize = 2*params.rMax() + params.vMax()*params.dt();
+        this.columns = CellGrid.columns(L, cellSize);
+        if (slabs < 1 || slabs > columns) {
+            throw new IllegalArgumentException("slabs must be between 1 and " + columns + ", the grid columns");
+        }
+        this.admission = params.spawnAdmission() ? new SpawnAdmission(params, cellSize, this::occupy) : null;
+        this.pool = options.pool();
+        this.rng = new SplitMixRandom(params.seed());
+        Geometry geometry = Geometry.of(params);
+        Passes passes = new Passes(params, geometry, options.movement().create(params, geometry));
+        this.ends = new CorridorEnds(geometry);
+        this.slabs = new Slab[slabs];
+        this.slabOfColumn = new int[columns];
+        for (int k = 0; k < slabs; k++) {
+            int first = (int) ((long) columns * k / slabs), end = (int) ((long) columns * (k + 1) / slabs);
+            this.slabs[k] = new Slab(first, end, columns, cellSize, L, W, passes,
+                    options.contactKernel().create(params), 64);
+            for (int c = first; c < end; c++) {
+                slabOfColumn[c] = k;
+            }
+        }
+    }
+
+    /**
+     * Advances the simulation by one tick, like {@link SimulationEngine#step(long, double)}.
+     */
+    public void step(long tick, double t) {
+        this.tick = tick;
+        this.time = t;
+        boolean removeExited = exitedPending;
+        forEachSlab(k -> slabs[k].shed(removeExited));
+        exitedPending = false;
+        if (admission != null) {
+            admission.clear();
+        }
+        ends.spawn(params, params.dt(), rng, entrance, admission);
+        for (Slab slab : slabs) {
+            for (int i = 0; i < slab.emigrants.size(); i++) {
+                slabAt(slab.emigrants.x(i)).receive(slab.emigrants, i);
+            }
+        }
+
+        double dt = params.dt();
+        forEachSlab(k -> slabs[k].exportBoundaries());
+        forEachSlab(k -> slabs[k].radiusPhase(left(k), right(k), dt));
+        forEachSlab(k -> slabs[k].motionPhase(left(k), right(k), dt));
+
+        for (Slab slab : slabs) {
+            pedestriansExitLeft += slab.exitedLeft;
+            pedestriansExitRight += slab.exitedRight;
+            exitedPending |= slab.exitedLeft + slab.exitedRight > 0;
+        }
+        nextTick = tick + 1;
+        nextTime = t + dt;
+    }
+
+    public long nextTick() {
+        return nextTick;
+    }
+
+    public double nextTime() {
+        return nextTime;
+    }
+
+    public Parameters parameters() {
+        return params;
+    }
+
+    public int slabCount() {
+        return slabs.length;
+    }
+
+    // Pedestrians currently owned by slab k.
+    public int slabParticleCount(int k) {
+        return slabs[k].owned();
+    }
+
+    public int particleCount() {
+        int n = 0;
+        for (Slab slab : slabs) {
+            n += slab.owned();
+        }
+        return n;
+    }
+
+    /**
+     * Places a pedestrian directly, like {@link SimulationEngine#addPedestrian}.
+     *
+     * @return the id of the new pedestrian
+     */
+    public int addPedestrian(double x, double y, double vx, double vy, int goalSign) {
+        int id = nextId++;
+        slabAt(x).add(id, x, y, vx, vy, params.rMax(), goalSign > 0 ? 1 : -1,
+                goalSign > 0 ? CorridorEnds.LEFT : CorridorEnds.RIGHT);
+        return id;
+    }
+
+    /**
+     * The last completed tick with the particles of every slab in id order, which is the
+     * store order of a {@link SimulationEngine} that never reorders.
+     */
+    public SimulationState snapshot() {
+        List<Particle> all = new ArrayList<>(particleCount());
+        for (Slab slab : slabs) {
+            slab.collect(all);
+        }
+        all.sort(Comparator.comparingInt(Particle::id));
+        return new SimulationState(tick, time, Collections.unmodifiableList(all), ends.spawnedLeft, ends.spawnedRight);
+    }
+
+    public boolean isFinished() {
+        return CorridorEnds.isFinished(params, pedestriansExitLeft, pedestriansExitRight);
+    }
+
+    private void enter(double x, double y, double vx, double r, int goalSign, int begin) {
+        slabAt(x).add(nextId++, x, y, vx, 0, r, goalSign, begin);
+    }
+
+    // Occupants of spawn admission: the slabs at either end, and every emigrant.
+    private void occupy(SpawnAdmission admission) {
+        for (Slab slab : slabs) {
+            if (slab.firstColumn < 2 || slab.endColumn > columns - 2) {
+                admission.occupy(slab.particles, 0, slab.owned());
+            }
+        }
+        // Not yet handed over, but already in the cells they moved to.
+        for (Slab slab : slabs) {
+            admission.occupy(slab.emigrants, 0, slab.emigrants.size());
+        }
+    }
+
+    private Slab slabAt(double x) {
+        return slabs[slabOfColumn[Slab.column(x, cellSize, columns)]];
+    }
+
+    private Slab left(int k) {
+        return k > 0 ? slabs[k - 1] : null;
+    }
+
+    private Slab right(int k) {
+        return k + 1 < slabs.length ? slabs[k + 1] : null;
+    }
+
+    // Runs one phase on every slab and returns once all are done.
+    private void forEachSlab(IntConsumer phase) {
+        if (pool == null || slabs.length == 1) {
+            for (int k = 0; k < slabs.length; k++) {
+                phase.accept(k);
+            }
+            return;
+        }
+        pool.invoke(new SlabTask(phase, 0, slabs.length));
+    }
+
+    // Splits slabs [lo, hi) until a single slab is left.
+    @SuppressWarnings("serial")
+    private static final class SlabTask extends RecursiveAction {
+        private final IntConsumer phase;
+        private final int lo, hi;
+
+        SlabTask(IntConsumer phase, int lo, int hi) {
+            this.phase = phase;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo == 1) {
+                phase.accept(lo);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new SlabTask(phase, lo, mid), new SlabTask(phase, mid, hi));
+        }
+    }
+}
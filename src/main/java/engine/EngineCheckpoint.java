@@ -0,0 +1,233 @@
+package engine;
+
+import model.Layout;
+import model.Parameters;
+import model.ParticleStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Little-endian binary encoding of an {@link EngineState}.
+ * <pre>
+ * header, 232 bytes
+ *    0  char[8]     magic "PEDCHKPT"
+ *    8  int32       format version (1)
+ *   12  int32       particle count n
+ *   16  int64       next tick
+ *   24  float64     next time
+ *   32  int64       RNG state
+ *   40  int64       RNG gamma
+ *   48  float64     left spawn accumulator
+ *   56  float64     right spawn accumulator
+ *   64  int32       next id
+ *   68  int32[4]    spawned left, spawned right, exited left, exited right
+ *   84  int32       flags, bit 0: exited particles still to be removed, bit 1: spawn admission
+ *   88  float64[14] parameters in record order, vMax .. beta
+ *  200  int64       parameter seed
+ *  208  int32       max particles
+ *  212  int32       reserved
+ *  216  float64     length of the last step
+ *  224  int32[2]    spawn limit and exits per side
+ * particles
+ *   float64[n] for each of x, y, vx, vy, radius, then int32[n] for each of id, goalSign, begin
+ * layout
+ *   int32 wall count w, int32 door count d, float64 resolution,
+ *   float64[4] x1, y1, x2, y2 for each wall, then int32 end (0 left, 1 right), float64 from, to for each door
+ * </pre>
+ * Files are written next to the target and then moved over it, so a crash while writing
+ * leaves the previous checkpoint intact.
+ */
+final class EngineCheckpoint {
+    static final byte[] MAGIC = "PEDCHKPT".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 232;
+    static final int PARTICLE_BYTES = 5 * Double.BYTES + 3 * Integer.BYTES;
+    private static final int WALL_BYTES = 4 * Double.BYTES;
+    private static final int DOOR_BYTES = Integer.BYTES + 2 * Double.BYTES;
+    private static final int FLAG_EXITED_PENDING = 1;
+    private static final int FLAG_SPAWN_ADMISSION = 2;
+
+    private EngineCheckpoint() {
+    }
+
+    static void write(EngineState s, Path path) throws IOException {
+        ParticleStore particles = s.particles();
+        int n = particles.size();
+        Parameters p = s.params();
+        Layout layout = p.layout();
+        int layoutBytes = 2 * Integer.BYTES + Double.BYTES + layout.walls().size() * WALL_BYTES
+                + layout.doors().size() * DOOR_BYTES;
+        ByteBuffer buf = ByteBuffer.allocateDirect(HEADER_BYTES + n * PARTICLE_BYTES + layoutBytes)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buf.put(MAGIC)
+                .putInt(VERSION)
+                .putInt(n)
+                .putLong(s.nextTick())
+                .putDouble(s.nextTime())
+                .putLong(s.rngState())
+                .putLong(s.rngGamma())
+                .putDouble(s.countL())
+                .putDouble(s.countR())
+                .putInt(s.nextId())
+                .putInt(s.spawnedLeft())
+                .putInt(s.spawnedRight())
+                .putInt(s.exitedLeft())
+                .putInt(s.exitedRight())
+                .putInt((s.exitedPending() ? FLAG_EXITED_PENDING : 0) | (p.spawnAdmission() ? FLAG_SPAWN_ADMISSION : 0));
+        for (double v : new double[]{p.vMax(), p.A_p(), p.B_p(), p.dt(), p.outputDt(), p.corridorLength(),
+                p.corridorWidth(), p.inflowPerSide(), p.rMin(), p.rMax(), p.A_w(), p.B_w(), p.tau(), p.beta()}) {
+            buf.putDouble(v);
+        }
+        buf.putLong(p.seed())
+                .putInt(s.maxParticles())
+                .putInt(0)
+                .putDouble(s.lastDt())
+                .putInt(p.spawnLimitPerSide())
+                .putInt(p.exitsPerSide());
+        for (int column = 0; column < 5; column++) {
+            for (int i = 0; i < n; i++) {
+                buf.putDouble(switch (column) {
+                    case 0 -> particles.x(i);
+                    case 1 -> particles.y(i);
+                    case 2 -> particles.vx(i);
+                    case 3 -> particles.vy(i);
+                    default -> particles.radius(i);
+                });
+            }
+        }
+        for (int column = 0; column < 3; column++) {
+            for (int i = 0; i < n; i++) {
+                buf.putInt(switch (column) {
+                    case 0 -> particles.id(i);
+                    case 1 -> particles.goalSign(i);
+                    default -> particles.begin(i);
+                });
+            }
+        }
+        buf.putInt(layout.walls().size())
+                .putInt(layout.doors().size())
+                .putDouble(layout.resolution());
+        for (Layout.Wall w : layout.walls()) {
+            buf.putDouble(w.x1()).putDouble(w.y1()).putDouble(w.x2()).putDouble(w.y2());
+        }
+        for (Layout.Door d : layout.doors()) {
+            buf.putInt(d.end().ordinal()).putDouble(d.from()).putDouble(d.to());
+        }
+        buf.flip();
+
+        Path dir = path.toAbsolutePath().getParent();
+        Path tmp = dir.resolve(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            channel.force(false);
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    static EngineState read(Path path) throws IOException {
+        ByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        if (buf.remaining() < HEADER_BYTES) {
+            throw new IOException(path + " is too short for a checkpoint");
+        }
+        byte[] magic = new byte[MAGIC.length];
+        buf.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException(path + " is not an engine checkpoint");
+        }
+        int version = buf.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported checkpoint format version " + version);
+        }
+        int n = buf.getInt();
+        long layoutAt = HEADER_BYTES + (long) n * PARTICLE_BYTES;
+        if (n < 0 || buf.capacity() < layoutAt + 2 * Integer.BYTES + Double.BYTES) {
+            throw new IOException(path + " is truncated");
+        }
+        long nextTick = buf.getLong();
+        double nextTime = buf.getDouble();
+        long rngState = buf.getLong();
+        long rngGamma = buf.getLong();
+        double countL = buf.getDouble();
+        double countR = buf.getDouble();
+        int nextId = buf.getInt();
+        int spawnedLeft = buf.getInt();
+        int spawnedRight = buf.getInt();
+        int exitedLeft = buf.getInt();
+        int exitedRight = buf.getInt();
+        int flags = buf.getInt();
+        boolean exitedPending = (flags & FLAG_EXITED_PENDING) != 0;
+        double[] v = new double[14];
+        for (int k = 0; k < v.length; k++) {
+            v[k] = buf.getDouble();
+        }
+        long seed = buf.getLong();
+        int maxParticles = buf.getInt();
+        buf.getInt();
+        double lastDt = buf.getDouble();
+        int spawnLimit = buf.getInt();
+        int exits = buf.getInt();
+        Layout layout = readLayout(buf, (int) layoutAt, path);
+        Parameters params = new Parameters(v[0], v[1], v[2], v[3], v[4], v[5], v[6], v[7],
+                spawnLimit, exits, (flags & FLAG_SPAWN_ADMISSION) != 0, v[8], v[9], v[10], v[11], v[12], v[13],
+                layout, seed);
+
+        int base = HEADER_BYTES;
+        int ints = base + 5 * n * Double.BYTES;
+        ParticleStore particles = new ParticleStore(Math.max(maxParticles, n));
+        for (int i = 0; i < n; i++) {
+            particles.add(buf.getInt(ints + 4 * i),
+                    buf.getDouble(base + 8 * i),
+                    buf.getDouble(base + 8 * (n + i)),
+                    buf.getDouble(base + 8 * (2 * n + i)),
+                    buf.getDouble(base + 8 * (3 * n + i)),
+                    buf.getDouble(base + 8 * (4 * n + i)),
+                    buf.getInt(ints + 4 * (n + i)),
+                    buf.getInt(ints + 4 * (2 * n + i)));
+        }
+        return new EngineState(params, maxParticles, nextTick, nextTime, lastDt, rngState, rngGamma, countL, countR, nextId,
+                spawnedLeft, spawnedRight, exitedLeft, exitedRight, exitedPending, particles);
+    }
+
+    private static Layout readLayout(ByteBuffer buf, int at, Path path) throws IOException {
+        int walls = buf.getInt(at), doors = buf.getInt(at + 4);
+        double resolution = buf.getDouble(at + 8);
+        int wallsAt = at + 2 * Integer.BYTES + Double.BYTES, doorsAt = wallsAt + walls * WALL_BYTES;
+        if (walls < 0 || doors < 0 || buf.capacity() < (long) doorsAt + (long) doors * DOOR_BYTES) {
+            throw new IOException(path + " is truncated");
+        }
+        Layout.Builder layout = Layout.builder().resolution(resolution);
+        for (int k = 0; k < walls; k++) {
+            int w = wallsAt + k * WALL_BYTES;
+            layout.wall(buf.getDouble(w), buf.getDouble(w + 8), buf.getDouble(w + 16), buf.getDouble(w + 24));
+        }
+        for (int k = 0; k < doors; k++) {
+            int d = doorsAt + k * DOOR_BYTES;
+            int end = buf.getInt(d);
+            if (end < 0 || end >= Layout.End.values().length) {
+                throw new IOException(path + " is corrupt: door " + k + " has end " + end);
+            }
+            layout.door(Layout.End.values()[end], buf.getDouble(d + 4), buf.getDouble(d + 12));
+        }
+        return layout.build();
+    }
+}
@@ -0,0 +1,140 @@
+package engine;
+
+import profile.TickProfiler;
+import space.CellGrid;
+
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Execution settings of a {@link SimulationEngine}. Unlike {@link model.Parameters}
+ * these never change the simulated model, only how a tick is computed. The two
+ * approximations on offer are opt-in: a movement strategy such as {@link FastAaCpmAvoidance},
+ * and adaptive time stepping through {@link Builder#adaptiveDt(double)}.
+ *
+ * @param pool            pool the per-particle passes are split across, or {@code null} to run them on the caller thread
+ * @param gridLayout      how the neighbour grid stores its cells
+ * @param reorderInterval with a {@link CellGrid.Layout#SORTED} grid, every how many ticks the particle
+ *                        store is permuted into cell order; 0 never reorders. Trajectories are unchanged,
+ *                        but frames list the particles in store order, so rows come out in cell order.
+ * @param movement        builds the avoidance strategy, {@link MovementStrategy#EXACT} by default
+ * @param contactKernel   builds one contact kernel per chunk, {@link ContactKernel#SCALAR} by default
+ * @param maxDt           longest step the engine may take while no pair can come into contact; a value not
+ *                        above {@link model.Parameters#dt()} (0 by default) keeps every step at dt
+ * @param profiler        times the phases of every tick, or {@code null} (the default) for no instrumentation;
+ *                        it keeps state, so give every engine its own
+ */
+public record EngineOptions(ForkJoinPool pool, CellGrid.Layout gridLayout, int reorderInterval,
+                            MovementStrategy.Factory movement, ContactKernel.Factory contactKernel, double maxDt,
+                            TickProfiler profiler) {
+
+    public EngineOptions {
+        Objects.requireNonNull(movement, "movement");
+        Objects.requireNonNull(contactKernel, "contactKernel");
+        if (reorderInterval < 0) {
+            throw new IllegalArgumentException("reorderInterval must not be negative");
+        }
+        if (reorderInterval > 0 && gridLayout != CellGrid.Layout.SORTED) {
+            throw new IllegalArgumentException("Reordering needs a SORTED grid");
+        }
+        if (!(maxDt >= 0)) {
+            throw new IllegalArgumentException("maxDt must not be negative");
+        }
+    }
+
+    public static EngineOptions serial() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    public boolean reorders() {
+        return reorderInterval > 0;
+    }
+
+    public static final class Builder {
+        private ForkJoinPool pool = null;
+        private CellGrid.Layout gridLayout = CellGrid.Layout.LINKED;
+        private int reorderInterval = 0;
+        private MovementStrategy.Factory movement = MovementStrategy.EXACT;
+        private ContactKernel.Factory contactKernel = ContactKernel.SCALAR;
+        private double maxDt = 0;
+        private TickProfiler profiler = null;
+
+        public Builder parallel(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        public Builder parallel() {
+            return parallel(ForkJoinPool.commonPool());
+        }
+
+        /**
+         * Counting-sorted grid, with the particle store permuted into cell order every
+         * {@code reorderInterval} ticks so neighbour scans walk memory mostly linearly.
+         */
+        public Builder cellOrdered(int reorderInterval) {
+            this.gridLayout = CellGrid.Layout.SORTED;
+            this.reorderInterval = reorderInterval;
+            return this;
+        }
+
+        /**
+         * Grid kept across ticks instead of rebuilt: only pedestrians that changed cell are
+         * relinked, so grid upkeep follows the movers rather than the population. Neighbour
+         * order, and with it every trajectory, is the same as with the default grid.
+         */
+        public Builder incrementalGrid() {
+            this.gridLayout = CellGrid.Layout.INCREMENTAL;
+            this.reorderInterval = 0;
+            return this;
+        }
+
+        public Builder movement(MovementStrategy.Factory movement) {
+            this.movement = movement;
+            return this;
+        }
+
+        // FastAaCpmAvoidance with exponential weights within 'tolerance' (relative).
+        public Builder fastAvoidance(double tolerance) {
+            return movement(FastAaCpmAvoidance.factory(tolerance));
+        }
+
+        public Builder contactKernel(ContactKernel.Factory contactKernel) {
+            this.contactKernel = contactKernel;
+            return this;
+        }
+
+        // The SIMD contact kernel when jdk.incubator.vector was added to the JVM, else the scalar one.
+        public Builder vectorised() {
+            return contactKernel(ContactKernel.best());
+        }
+
+        /**
+         * Lets sparse phases run with steps of up to {@code maxDt}: each step is as long as the
+         * closest pair allows without touching before the next one, and falls back to the
+         * model's dt as soon as any pair could. WindowedSpeed and CellDensity weight every
+         * tick by the length of its step.
+         */
+        public Builder adaptiveDt(double maxDt) {
+            this.maxDt = maxDt;
+            return this;
+        }
+
+        public Builder profiler(TickProfiler profiler) {
+            this.profiler = profiler;
+            return this;
+        }
+
+        public EngineOptions build() {
+            return new EngineOptions(pool, gridLayout, reorderInterval, movement, contactKernel, maxDt, profiler);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package engine;
+
+import model.Parameters;
+import model.ParticleStore;
+
+// Everything a SimulationEngine needs to continue exactly where it stopped.
+record EngineState(Parameters params, int maxParticles,
+                   long nextTick, double nextTime, double lastDt,
+                   long rngState, long rngGamma,
+                   double countL, double countR, int nextId,
+                   int spawnedLeft, int spawnedRight, int exitedLeft, int exitedRight,
+                   boolean exitedPending,
+                   ParticleStore particles) {
+}
@@ -0,0 +1,51 @@
+package engine;
+
+/**
+ * exp(-x) for x >= 0 from two small tables: e^-k for the integer part k, and e^-f for the
+ * fraction f in [0, 1) by linear interpolation. The product keeps the interpolation's
+ * relative error, so the tolerance holds over the whole range, not just near 0.
+ */
+final class ExpTable {
+    // e^-746 is below the smallest subnormal double.
+    private static final int WHOLE_STEPS = 746;
+    // Finer steps than this would cost more memory than Math.exp costs time.
+    static final double MIN_TOLERANCE = 1e-10;
+
+    private final double[] whole = new double[WHOLE_STEPS];
+    private final double[] fraction;
+    private final double steps;
+
+    /**
+     * @param tolerance bound on the relative error of {@link #expMinus(double)}
+     */
+    ExpTable(double tolerance) {
+        if (!(tolerance >= MIN_TOLERANCE && tolerance < 1)) {
+            throw new IllegalArgumentException("tolerance must be in [" + MIN_TOLERANCE + ", 1): " + tolerance);
+        }
+        // Linear interpolation of e^-f with step h is off by at most h²/8 relative to the
+        // true value; 10 % of margin covers rounding and the e^h growth across a step.
+        int n = (int) Math.ceil(1.1 / Math.sqrt(8 * tolerance));
+        fraction = new double[n + 1];
+        for (int k = 0; k <= n; k++) {
+            fraction[k] = Math.exp(-(double) k / n);
+        }
+        for (int k = 0; k < WHOLE_STEPS; k++) {
+            whole[k] = Math.exp(-k);
+        }
+        steps = n;
+    }
+
+    double expMinus(double x) {
+        if (!(x >= 0)) {
+            return Math.exp(-x);
+        }
+        if (x >= WHOLE_STEPS) {
+            return 0.0;
+        }
+        int k = (int) x;
+        double at = (x - k) * steps;
+        int idx = (int) at;
+        double lo = fraction[idx];
+        return whole[k] * (lo + (fraction[idx + 1] - lo) * (at - idx));
+    }
+}
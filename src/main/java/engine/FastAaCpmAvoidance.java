@@ -0,0 +1,126 @@
+package engine;
+
+import model.ParticleStore;
+import space.Geometry;
+
+/**
+ * {@link AaCpmAvoidance} without transcendental calls per neighbour: the two nearest
+ * frontal neighbours are picked in one pass on squared distance, the frontal-cone test is
+ * the sign of a dot product, the evasion rotation comes straight from the dot and cross
+ * products, and the exponential weights are read from an {@link ExpTable}.
+ * <p>
+ * The result agrees with the exact strategy up to the table tolerance, except on exact
+ * ties and on the rounding edges of the cone test. Validated by {@code bench.AvoidanceAccuracy}.
+ */
+public final class FastAaCpmAvoidance implements MovementStrategy {
+    public static final double DEFAULT_TOLERANCE = 1e-6;
+
+    private final double A_p, B_p;
+    private final double A_w, B_w;
+    private final Geometry geometry;
+    private final double invB_p, invB_w;
+    private final ExpTable exp;
+
+    public FastAaCpmAvoidance(double A_p, double B_p, double A_w, double B_w, Geometry geometry) {
+        this(A_p, B_p, A_w, B_w, geometry, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * @param tolerance relative error allowed on the exponential weights, at least 1e-10
+     */
+    public FastAaCpmAvoidance(double A_p, double B_p, double A_w, double B_w, Geometry geometry, double tolerance) {
+        this.A_p = A_p;
+        this.B_p = B_p;
+        this.A_w = A_w;
+        this.B_w = B_w;
+        this.geometry = geometry;
+        this.invB_p = 1 / B_p;
+        this.invB_w = 1 / B_w;
+        this.exp = new ExpTable(tolerance);
+    }
+
+    public static Factory factory(double tolerance) {
+        return (p, geometry) -> new FastAaCpmAvoidance(p.A_p(), p.B_p(), p.A_w(), p.B_w(), geometry, tolerance);
+    }
+
+    @Override
+    public void desiredDirection(ParticleStore s, int i, int[] neighbours, int start, int count, double[] out) {
+        double xi = s.x(i), yi = s.y(i);
+        // Desired (target) direction e_t; 'out' is scratch until the result goes in.
+        geometry.targetDirection(xi, yi, s.goalSign(i), out);
+        double etx = out[0], ety = out[1];
+
+        int first = -1, second = -1;
+        double d2First = Double.POSITIVE_INFINITY, d2Second = Double.POSITIVE_INFINITY;
+        for (int k = start, end = start + count; k < end; k++) {
+            int j = neighbours[k];
+            double rx = s.x(j) - xi, ry = s.y(j) - yi;
+            // Frontal: ahead along e_t, or level with i.
+            if (rx * etx + ry * ety < 0) {
+                continue;
+            }
+            double d2 = rx * rx + ry * ry;
+            if (d2 < d2First) {
+                second = first;
+                d2Second = d2First;
+                first = j;
+                d2First = d2;
+            } else if (d2 < d2Second) {
+                second = j;
+                d2Second = d2;
+            }
+        }
+
+        double sumX = 0.0, sumY = 0.0;
+        double vxi = s.vx(i), vyi = s.vy(i);
+        for (int n = 0; n < 2; n++) {
+            int j = n == 0 ? first : second;
+            if (j < 0) {
+                break;
+            }
+            double d2 = n == 0 ? d2First : d2Second;
+            if (d2 == 0.0) throw new ArithmeticException("Overlapping particles");
+
+            double vijX = s.vx(j) - vxi, vijY = s.vy(j) - vyi;
+            double vij2 = vijX * vijX + vijY * vijY;
+            // Only neighbours approaching within the frontal 180° (v_ij · e_t <= 0) deflect.
+            if (vij2 == 0 || vijX * etx + vijY * ety > 0) {
+                continue;
+            }
+            double d = Math.sqrt(d2);
+            double ex = (xi - s.x(j)) / d, ey = (yi - s.y(j)) / d;
+            double invVij = 1 / Math.sqrt(vij2);
+            double dot = (ex * vijX + ey * vijY) * invVij;
+            double det = (ex * vijY - ey * vijX) * invVij;
+            // Rotation by -sign(α)·||α| - π/2| with α = atan2(det, dot):
+            // cos = sin|α| = |det|, sin = -sign(α)·|cos α| = -sign(α)·|dot|.
+            double cos, sin;
+            if (det != 0) {
+                cos = Math.abs(det);
+                sin = -Math.signum(det) * Math.abs(dot);
+            } else if (dot > 0) {
+                cos = 1.0; // α = 0: no rotation
+                sin = 0.0;
+            } else {
+                cos = 0.0; // α = ±π, the sign of the zero decides
+                sin = -Math.copySign(1.0, det);
+            }
+            double ecX = cos * ex - sin * ey;
+            double ecY = sin * ex + cos * ey;
+            double w_j = A_p * exp.expMinus(d * invB_p);
+            sumX = sumX + ecX * w_j;
+            sumY = sumY + ecY * w_j;
+        }
+
+        // Wall repulsion n_wc, from the nearest wall
+        double d_iw = geometry.nearestWall(xi, yi, out);
+        double eiwX = out[0], eiwY = out[1];
+        double wallWeight = A_w * exp.expMinus(d_iw * invB_w);
+
+        double ax = etx + sumX + eiwX * wallWeight;
+        double ay = ety + sumY + eiwY * wallWeight;
+        double aLen = Math.sqrt(ax * ax + ay * ay);
+        out[0] = aLen == 0.0 ? ax : ax / aLen; // e_a
+        out[1] = aLen == 0.0 ? ay : ay / aLen;
+    }
+}
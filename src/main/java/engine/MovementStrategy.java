@@ -1,10 +1,24 @@
 package engine;
 
-import model.Particle;
-import model.Vector2D;
-
-import java.util.List;
+import model.Parameters;
+import model.ParticleStore;
+import space.Geometry;
 
 public interface MovementStrategy {
-    Vector2D desiredDirection(Particle particle, List<Particle> neighbors);
+    /**
+     * Writes the unit desired direction of particle {@code i} into {@code out[0]}, {@code out[1]}.
+     * {@code neighbours[start..start + count)} holds the store indices of its neighbours, excluding {@code i}.
+     */
+    void desiredDirection(ParticleStore particles, int i, int[] neighbours, int start, int count, double[] out);
+
+    /**
+     * Builds the strategy of one engine, which steers by the engine's geometry. Strategies are
+     * shared by the workers of a parallel engine, so they must not keep per-call state.
+     */
+    @FunctionalInterface
+    interface Factory {
+        MovementStrategy create(Parameters p, Geometry geometry);
+    }
+
+    Factory EXACT = (p, geometry) -> new AaCpmAvoidance(p.A_p(), p.B_p(), p.A_w(), p.B_w(), geometry);
 }
@@ -0,0 +1,70 @@
+package engine;
+
+import java.util.Arrays;
+
+// Per-chunk scratch space: the neighbour lists of the chunk's particles [from, to) in CSR
+// form, built once per tick and read by every pass, the chunk's contact kernel with room
+// for its result, and the direction returned by the movement strategy.
+// The neighbours of particle i are indices[start(i) .. start(i) + count(i)).
+final class NeighbourBuffer {
+    int[] indices = new int[1024];
+    int[] offsets = new int[65];
+    int from;
+    // Contacts the motion pass found in this chunk, for the profiler.
+    long contactsFound;
+    // With an INCREMENTAL grid: particles the motion pass placed in another cell, each followed
+    // by that cell, to relink.
+    int[] movers = new int[64];
+    int moved;
+    final ContactKernel kernel;
+    int[] contacts = new int[64];
+    final double[] direction = new double[2];
+
+    NeighbourBuffer(ContactKernel kernel) {
+        this.kernel = kernel;
+    }
+
+    void begin(int from, int to) {
+        this.from = from;
+        if (offsets.length < to - from + 1) {
+            offsets = new int[Math.max(to - from + 1, offsets.length * 2)];
+        }
+        offsets[0] = 0;
+        contactsFound = 0;
+    }
+
+    // Entries in all lists of the chunk, valid once the neighbour pass filled it.
+    int listed(int to) {
+        return offsets[to - from];
+    }
+
+    int start(int i) {
+        return offsets[i - from];
+    }
+
+    int count(int i) {
+        return offsets[i - from + 1] - offsets[i - from];
+    }
+
+    void addMover(int i, int cell) {
+        if (2 * moved == movers.length) {
+            movers = Arrays.copyOf(movers, 4 * moved);
+        }
+        movers[2 * moved] = i;
+        movers[2 * moved + 1] = cell;
+        moved++;
+    }
+
+    // Room in 'contacts' for every neighbour of a particle.
+    void ensureContacts(int count) {
+        if (contacts.length < count) {
+            contacts = new int[Math.max(count, contacts.length * 2)];
+        }
+    }
+
+    void ensureCapacity(int capacity) {
+        if (indices.length < capacity) {
+            indices = Arrays.copyOf(indices, Math.max(capacity, indices.length * 2));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package engine;
+
+import model.Parameters;
+import model.ParticleStore;
+import space.CellGrid;
+import space.Geometry;
+
+/**
+ * The per-particle passes of a step, over particles [from, to) of a store and the grid
+ * built from it. Each particle only reads the committed state and writes its own next-buffer
+ * slot. SimulationEngine and the slabs of {@link DecomposedEngine} share this code, so both
+ * compute the same numbers.
+ */
+final class Passes {
+    private final Parameters params;
+    private final Geometry geometry;
+    private final MovementStrategy movementStrategy;
+
+    Passes(Parameters params, Geometry geometry, MovementStrategy movementStrategy) {
+        this.params = params;
+        this.geometry = geometry;
+        this.movementStrategy = movementStrategy;
+    }
+
+    /**
+     * Collects the neighbours of particles [from, to) into the chunk's buffer. Chunk
+     * boundaries only depend on n, so the later passes find the lists of exactly
+     * their own particles there.
+     */
+    void neighbours(ParticleStore particles, CellGrid grid, int from, int to, NeighbourBuffer nb) {
+        nb.begin(from, to);
+        int at = 0;
+        for (int i = from; i < to; i++) {
+            double x = particles.x(i), y = particles.y(i);
+            int count = grid.neighbours(i, x, y, Double.POSITIVE_INFINITY, nb.indices, at);
+            if (count > nb.indices.length - at) {
+                nb.ensureCapacity(at + count);
+                grid.neighbours(i, x, y, Double.POSITIVE_INFINITY, nb.indices, at);
+            }
+            at += count;
+            nb.offsets[i - from + 1] = at;
+        }
+    }
+
+    void radius(ParticleStore particles, int from, int to, NeighbourBuffer nb, double dt) {
+        for (int i = from; i < to; i++) {
+            particles.setNextRadius(i, adjustRadius(particles, i, nb, dt));
+        }
+    }
+
+    /**
+     * Moves particles [from, to). With an {@code incremental} grid (else null), every particle
+     * is also placed there, and those that left their cell are noted in {@code nb.movers}.
+     */
+    void motion(ParticleStore particles, int from, int to, NeighbourBuffer nb, double dt, CellGrid incremental) {
+        long contactsFound = 0;
+        nb.moved = 0;
+        for (int i = from; i < to; i++) {
+            int[] neighbours = nb.indices;
+            int start = nb.start(i), end = start + nb.count(i);
+            nb.ensureContacts(end - start);
+            int contacts = nb.kernel.contacts(particles, i, neighbours, start, end - start, nb.contacts);
+            boolean inContact = contacts > 0;
+            contactsFound += contacts;
+
+            double dirX, dirY;
+            double speed;
+
+            if (inContact) {
+                double sumX = 0.0, sumY = 0.0;
+                for (int k = 0; k < contacts; k++) {
+                    int j = nb.contacts[k];
+                    double ex = particles.x(i) - particles.x(j), ey = particles.y(i) - particles.y(j);
+                    double len = Math.sqrt(ex * ex + ey * ey);
+                    if (len != 0.0) {
+                        ex = ex / len;
+                        ey = ey / len;
+                    }
+                    sumX = sumX + ex;
+                    sumY = sumY + ey;
+                }
+                double len = Math.sqrt(sumX * sumX + sumY * sumY);
+                dirX = len == 0.0 ? sumX : sumX / len;
+                dirY = len == 0.0 ? sumY : sumY / len;
+                speed = params.vMax();
+            } else {
+                movementStrategy.desiredDirection(particles, i, neighbours, start, end - start, nb.direction);
+                dirX = nb.direction[0];
+                dirY = nb.direction[1];
+                speed = freeSpeed(particles.radius(i));
+            }
+
+            double vx = dirX * speed, vy = dirY * speed;
+            double r = particles.radius(i);
+            // The direction buffer is free again: it takes the position, kept clear of the walls.
+            geometry.confine(particles.x(i) + vx * dt, particles.y(i) + vy * dt, r, nb.direction);
+            particles.setNextMotion(i, nb.direction[0], nb.direction[1], vx, vy);
+            if (incremental != null) {
+                int cell = incremental.place(i, nb.direction[0], nb.direction[1]);
+                if (cell != -1) {
+                    nb.addMover(i, cell);
+                }
+            }
+        }
+        nb.contactsFound = contactsFound;
+    }
+
+    private double adjustRadius(ParticleStore particles, int i, NeighbourBuffer nb, double dt) {
+        nb.ensureContacts(nb.count(i));
+        if (nb.kernel.anyContact(particles, i, nb.indices, nb.start(i), nb.count(i), nb.contacts)) {
+            return params.rMin();
+        }
+        double r = particles.radius(i);
+        return Math.min(r+params.rMax()*dt/params.tau(),params.rMax());
+    }
+
+    private double freeSpeed(double r) {
+        double alpha = (r - params.rMin()) / (params.rMax() - params.rMin());
+        return params.vMax() * Math.pow(alpha, params.beta());
+    }
+}
@@ -0,0 +1,79 @@
+package engine;
+
+import model.ParticleStore;
+
+// The contact test one pair at a time, as the engine always did it.
+final class ScalarContactKernel implements ContactKernel {
+    private final double rMin;
+
+    ScalarContactKernel(double rMin) {
+        this.rMin = rMin;
+    }
+
+    @Override
+    public int contacts(ParticleStore s, int i, int[] neighbours, int start, int count, int[] out) {
+        double xi = s.x(i), yi = s.y(i), ri = s.radius(i), vx = s.vx(i), vy = s.vy(i);
+        int found = 0;
+        for (int k = start; k < start + count; k++) {
+            int j = neighbours[k];
+            if (areColliding(rMin, xi, yi, ri, vx, vy, s.x(j), s.y(j), s.radius(j))) {
+                out[found++] = j;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public boolean anyContact(ParticleStore s, int i, int[] neighbours, int start, int count, int[] scratch) {
+        double xi = s.x(i), yi = s.y(i), ri = s.radius(i), vx = s.vx(i), vy = s.vy(i);
+        for (int k = start; k < start + count; k++) {
+            int j = neighbours[k];
+            if (areColliding(rMin, xi, yi, ri, vx, vy, s.x(j), s.y(j), s.radius(j))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean areColliding(double r_min, double xi, double yi, double ri, double vx, double vy,
+                                double xj, double yj, double rj) {
+        double rx = xj - xi, ry = yj - yi;
+        double dist = Math.sqrt(rx * rx + ry * ry);
+        boolean radiiOverlap = dist < ri + rj;
+        boolean firstCondition = ri == r_min && radiiOverlap;
+        if(firstCondition){
+            return true;
+        }
+
+        double cosBeta = (rx * vx + ry * vy) / (Math.sqrt(vx * vx + vy * vy) * dist);
+        if(ri!=r_min && cosBeta>=0){
+            firstCondition=true;
+        }
+
+        return firstCondition && radiiOverlap && intersectsTangentialStrip(r_min, vx, vy, rx, ry, rj);
+    }
+
+    /**
+     * Returns true if the circle of radius rj at offset (diffX, diffY) from i intersects
+     * either of the two lines that are parallel to v_i and tangent to the auxiliary circle
+     * of radius r_min around i (paper Fig. 1, right panel).
+     */
+    static boolean intersectsTangentialStrip(double r_min, double vx, double vy, double diffX, double diffY, double rj) {
+        double speedSq = vx * vx + vy * vy;
+        if (speedSq == 0.0) {
+            return false; // No heading ⇒ no strip
+        }
+
+        double speed = Math.sqrt(speedSq);
+        double dirX = vx / speed, dirY = vy / speed;
+
+        // Check if j is in front of i
+        double forward = dirX * diffX + dirY * diffY;
+        if (forward < 0) return false;
+
+        // Distance to the line through i along v_i (perpendicular = (-dirY, dirX))
+        double dist = Math.abs(-dirY * diffX + dirX * diffY);
+
+        return dist < r_min + rj;
+    }
+}
@@ -1,253 +1,458 @@
 package engine;
 
 import model.Parameters;
-import model.Particle;
+import model.ParticleStore;
 import model.SimulationState;
-import model.Vector2D;
+import observe.Observer;
+import profile.Phase;
+import profile.TickProfiler;
 import space.CellGrid;
+import space.Geometry;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.RecursiveAction;
 
 public final class SimulationEngine {
-    private static final int LEFT = 0;
-    private static final int RIGHT = 16;
+    private static final int LEFT = CorridorEnds.LEFT;
+    private static final int RIGHT = CorridorEnds.RIGHT;
+    // Chunks per pool worker in parallel mode, so uneven neighbourhoods still balance.
+    private static final int CHUNKS_PER_WORKER = 4;
+    // Below this many particles a tick is not worth splitting.
+    private static final int MIN_PARALLEL_PARTICLES = 512;
+    // Share of the closest gap an adaptive step may use up; the rest absorbs the growth of the step after.
+    private static final double GAP_SAFETY = 0.5;
     private final Parameters params;
     private final int maxParticles;
     private final double L, W;
-    private final List<Particle> particles = new ArrayList<>();
-    private final List<Integer> neighborIndices = new ArrayList<>();
-    private final MovementStrategy movementStrategy;
+    private final ParticleStore particles;
+    private final Passes passes;
     private final CellGrid grid;
-    private final Random rng=new Random();
+    // Whether the grid is CellGrid.Layout.INCREMENTAL, kept in step by the motion pass.
+    private final boolean incremental;
+    private final SplitMixRandom rng;
+    private final EngineOptions options;
+    private final TickProfiler profiler;
+    // Particles are updated in chunks; each chunk owns its neighbour lists so chunks can run concurrently.
+    private final NeighbourBuffer[] buffers;
+    private final RangePass neighbourPass = this::neighbourPass;
+    private final RangePass radiusPass = this::radiusPass;
+    private final RangePass motionPass = this::motionPass;
+    private final CorridorEnds ends;
+    private final CorridorEnds.Entrance entrance = this::enter;
+    // Only with Parameters.spawnAdmission().
+    private final SpawnAdmission admission;
+    private Observer[] observers = new Observer[0];
+    // Longest step allowed; above params.dt() only with adaptive stepping.
+    private final double maxDt;
+    private int[] reach = new int[64];
+    // Length of the current step, and of the previous one (what the spawn accumulators add up).
+    private double stepDt, lastDt;
+    private long tick;
+    private double time;
+    // Tick and time of the next step, as the run loops advance them.
+    private long nextTick = 0;
+    private double nextTime = 0;
+    private boolean exitedPending = false;
     private int nextId = 0;
-    private double countL = 0, countR = 0;
-    private int pedestriansSpawnedLeft = 0;
-    private int pedestriansSpawnedRight = 0;
     private int pedestriansExitLeft = 0;
     private int pedestriansExitRight = 0;
 
     public SimulationEngine(Parameters params, int maxParticles) {
+        this(params, maxParticles, EngineOptions.serial());
+    }
+
+    public SimulationEngine(Parameters params, int maxParticles, EngineOptions options) {
+        this(params, maxParticles, options, new SplitMixRandom(params.seed()), new ParticleStore(maxParticles));
+    }
+
+    private SimulationEngine(Parameters params, int maxParticles, EngineOptions options, SplitMixRandom rng,
+                             ParticleStore particles) {
         this.params = params;
+        this.options = options;
+        this.profiler = options.profiler();
+        this.rng = rng;
         this.maxParticles = maxParticles;
         this.L = params.corridorLength();
         this.W = params.corridorWidth();
-        this.movementStrategy = new AaCpmAvoidance(params.A_p(), params.B_p(), params.A_w(), params.B_w(), params.corridorWidth());
-        this.grid = new CellGrid(L, W, 2*params.rMax() + params.vMax()*params.dt(), maxParticles);
+        this.particles = particles;
+        Geometry geometry = Geometry.of(params);
+        this.passes = new Passes(params, geometry, options.movement().create(params, geometry));
+        this.ends = new CorridorEnds(geometry);
+        this.maxDt = Math.max(options.maxDt(), params.dt());
+        this.stepDt = this.lastDt = params.dt();
+        this.grid = new CellGrid(L, W, 2*params.rMax() + params.vMax()*params.dt(), maxParticles, options.gridLayout());
+        this.incremental = grid.layout() == CellGrid.Layout.INCREMENTAL;
+        this.admission = params.spawnAdmission() ? new SpawnAdmission(params, grid.cellSize(),
+                a -> a.occupy(this.particles, 0, this.particles.size())) : null;
+        int chunks = options.isParallel() ? CHUNKS_PER_WORKER * options.pool().getParallelism() : 1;
+        this.buffers = new NeighbourBuffer[chunks];
+        for (int k = 0; k < chunks; k++) {
+            buffers[k] = new NeighbourBuffer(options.contactKernel().create(params));
+        }
 
     }
 
-    public SimulationState step(long tick, double t) {
+    /**
+     * Advances the simulation by one tick, mutating the particle store in place.
+     * Call {@link #snapshot()} afterwards to obtain the state of this tick.
+     */
+    public void step(long tick, double t) {
+        TickProfiler profiler = this.profiler;
+        if (profiler != null) {
+            profiler.startTick(tick);
+        }
+        this.tick = tick;
+        this.time = t;
+        if (exitedPending) {
+            removeExited();
+        }
+        if (profiler != null) {
+            profiler.lap(Phase.EXITS);
+        }
         spawn();
+        if (profiler != null) {
+            profiler.lap(Phase.SPAWN);
+        }
 
-//        System.out.printf("Qin: %f, tick %d  size=%d  exitedL=%d exitedR=%d rMin-count=%d\n",
-//                params.inflowPerSide(), tick, particles.size(), pedestriansExitLeft, pedestriansExitRight,
-//                particles.stream().filter(pp -> pp.radius() == params.rMin()).count());
-
-        grid.reset();
-        for (int i = 0; i < particles.size(); i++) {
-            grid.insert(i, particles.get(i).pos());
+        int n = particles.size();
+        buildGrid(n);
+        if (options.reorders() && tick % options.reorderInterval() == 0) {
+            particles.permute(grid.cellOrder());
+            buildGrid(n);
+        }
+        if (profiler != null) {
+            profiler.lap(Phase.GRID);
         }
 
-        List<Particle> next = new ArrayList<>(particles.size());
-        for(int i = 0; i < particles.size(); i++){
-            Particle p = particles.get(i);
-            final Particle particle=p;
-            List<Particle> neighbors = getNeighbors(i);
-            neighbors.removeIf(e-> e.id()==particle.id());
-            double rNew = adjustRadius(p, neighbors);
-            p=p.withRadius(rNew);
-            particles.set(i,p);
+        // Neighbour lists of this tick, shared by both passes below (positions only change in the motion pass).
+        runPass(neighbourPass, n);
+        if (profiler != null) {
+            profiler.lap(Phase.NEIGHBOURS);
+        }
+        stepDt = maxDt > params.dt() ? adaptiveDt(n) : params.dt();
+        if (profiler != null) {
+            profiler.lap(Phase.STEP_SIZE);
         }
-        for (int i = 0; i < particles.size(); i++) {
-            Particle p = particles.get(i);
-            final Particle particle=p;
-            List<Particle> neighbors = getNeighbors(i);
-            neighbors.removeIf(e-> e.id()==particle.id());
-            boolean inContact=false;
-            for(Particle n:neighbors){
-                if(areColliding(p,n)){
-                    inContact=true;
-                    break;
-                }
-            }
 
-            Vector2D dir;
-            double speed;
+        // Radius pass: reads the current radii, writes the next ones.
+        runPass(radiusPass, n);
+        particles.commitRadius();
+        if (profiler != null) {
+            profiler.lap(Phase.RADIUS);
+        }
 
-            if (inContact) {
-                Vector2D sum = Vector2D.zero();
-                for (Particle n : neighbors) {
-                    if (p.id() == n.id()) continue;
+        // Motion pass: reads the current positions and velocities, writes the next ones.
+        runPass(motionPass, n);
+        particles.commitMotion();
+        if (profiler != null) {
+            profiler.lap(Phase.MOTION);
+        }
+        if (incremental) {
+            relinkMovers(n);
+            if (profiler != null) {
+                profiler.lap(Phase.GRID);
+            }
+        }
+        countExited(t);
+        if (profiler != null) {
+            profiler.lap(Phase.EXITS);
+        }
+        for (Observer observer : observers) {
+            observer.afterStep(particles, grid, tick, t);
+        }
+        if (profiler != null) {
+            profiler.lap(Phase.OBSERVERS);
+            countWork(profiler, n);
+        }
+        nextTick = tick + 1;
+        nextTime = t + stepDt;
+        lastDt = stepDt;
+    }
 
-                    if (areColliding(p, n)) {
-                        sum = sum.add(p.pos().sub(n.pos()).normalised());
-                    }
+    /**
+     * Longest step in [dt, maxDt] over which no pair can come into contact. A gap
+     * (distance minus both radii) closes at most at 2 vMax from the motion, plus
+     * rMax / tau for each of the two radii still growing back; the step may use up
+     * half the smallest gap at that rate. A pair that only allows dt ends the scan.
+     */
+    private double adaptiveDt(int n) {
+        double growth = params.rMax() / params.tau();
+        double dt = params.dt();
+        double allowed = maxDt;
+        // Pairs farther apart than this never limit the step.
+        double radius = 2 * params.rMax() + (2 * params.vMax() + 2 * growth) * maxDt / GAP_SAFETY;
+        for (int i = 0; i < n && allowed > dt; i++) {
+            double x = particles.x(i), y = particles.y(i), r = particles.radius(i);
+            int count = grid.within(i, x, y, radius, reach, 0);
+            if (count > reach.length) {
+                reach = new int[Math.max(count, 2 * reach.length)];
+                grid.within(i, x, y, radius, reach, 0);
+            }
+            double closingI = 2 * params.vMax() + (r < params.rMax() ? growth : 0);
+            for (int k = 0; k < count; k++) {
+                int j = reach[k];
+                if (j < i) {
+                    continue;
                 }
-                dir = sum.normalised();
-                speed = params.vMax();
-            } else {
-                dir = movementStrategy.desiredDirection(p, neighbors);
-                speed = freeSpeed(p.radius());
+                double rj = particles.radius(j);
+                double dx = particles.x(j) - x, dy = particles.y(j) - y;
+                double gap = Math.sqrt(dx * dx + dy * dy) - r - rj;
+                double closing = closingI + (rj < params.rMax() ? growth : 0);
+                allowed = Math.min(allowed, GAP_SAFETY * gap / closing);
             }
+        }
+        return Math.max(dt, allowed);
+    }
 
-            Vector2D vel = dir.mul(speed);
-            Vector2D pos = p.pos().add(vel.mul(params.dt()));
-            double x =pos.x();
-            double y = Math.max(p.radius(), Math.min(W - p.radius(), pos.y()));
+    // Tick to pass to the next step(): 0 for a new engine, the saved one for a restored engine.
+    public long nextTick() {
+        return nextTick;
+    }
 
-            Particle pNext = p.withPosition(Vector2D.of(x, y))
-                    .withVelocity(vel);
+    // Time to pass to the next step(): the last time plus the length of the last step.
+    public double nextTime() {
+        return nextTime;
+    }
 
-            next.add(pNext);
-        }
-        particles.clear();
-        particles.addAll(next);
-        removeExited();
-        return new SimulationState(tick, List.copyOf(next), pedestriansSpawnedLeft, pedestriansSpawnedRight);
+    public Parameters parameters() {
+        return params;
     }
 
-    private double adjustRadius(Particle p, List<Particle> neighbors) {
-        for (Particle neighbour : neighbors) {
-            if (areColliding(p, neighbour)) {
-                return params.rMin();
-            }
-        }
-        double r =p.radius();
-        return Math.min(r+params.rMax()*params.dt()/params.tau(),params.rMax());
+    public EngineOptions options() {
+        return options;
     }
-    private boolean isCollidingWall(Particle p){
-        double wallCoord=p.pos().y()>W/2?W:0;
-        return Math.abs(wallCoord-p.pos().y())<params.rMin();
 
+    /**
+     * Saves the complete engine state after the last step: particles, spawn accumulators,
+     * counters, next id, random generator, tick/time and the last step length. Observers are not part of it.
+     */
+    public void checkpoint(Path path) throws IOException {
+        EngineCheckpoint.write(new EngineState(params, maxParticles, nextTick, nextTime, lastDt, rng.state(), rng.gamma(),
+                ends.countL, ends.countR, nextId, ends.spawnedLeft, ends.spawnedRight,
+                pedestriansExitLeft, pedestriansExitRight, exitedPending, particles), path);
     }
-    private double freeSpeed(double r) {
-        double alpha = (r - params.rMin()) / (params.rMax() - params.rMin());
-        return params.vMax() * Math.pow(alpha, params.beta());
+
+    /**
+     * Rebuilds an engine from {@link #checkpoint(Path)}. Stepping it from {@link #nextTick()}
+     * and {@link #nextTime()} reproduces the original run bit for bit.
+     */
+    public static SimulationEngine restore(Path checkpoint, EngineOptions options) throws IOException {
+        EngineState s = EngineCheckpoint.read(checkpoint);
+        return restore(s, s.params(), new SplitMixRandom(s.rngState(), s.rngGamma()), options);
     }
 
-    private boolean areColliding(Particle p_i, Particle p_j) {
+    /**
+     * Restores a checkpoint with a fresh random stream seeded by {@code seed}, to branch
+     * several different continuations off one warmed-up state.
+     */
+    public static SimulationEngine restore(Path checkpoint, EngineOptions options, long seed) throws IOException {
+        EngineState s = EngineCheckpoint.read(checkpoint);
+        return restore(s, s.params().withSeed(seed), new SplitMixRandom(seed), options);
+    }
 
-        double r_min = params.rMin();
-        Vector2D r_ij=p_j.pos().sub(p_i.pos());
-        boolean radiiOverlap=r_ij.length() < p_i.radius()+p_j.radius();
-        boolean firstCondition=p_i.radius()==r_min && radiiOverlap;
-        if(firstCondition){
-            return true;
+    private static SimulationEngine restore(EngineState s, Parameters params, SplitMixRandom rng, EngineOptions options) {
+        SimulationEngine engine = new SimulationEngine(params, s.maxParticles(), options, rng, s.particles());
+        engine.tick = s.nextTick() - 1;
+        engine.nextTick = s.nextTick();
+        engine.nextTime = s.nextTime();
+        engine.lastDt = s.lastDt();
+        engine.time = s.nextTime() - s.lastDt();
+        engine.ends.countL = s.countL();
+        engine.ends.countR = s.countR();
+        engine.nextId = s.nextId();
+        engine.ends.spawnedLeft = s.spawnedLeft();
+        engine.ends.spawnedRight = s.spawnedRight();
+        engine.pedestriansExitLeft = s.exitedLeft();
+        engine.pedestriansExitRight = s.exitedRight();
+        engine.exitedPending = s.exitedPending();
+        return engine;
+    }
+
+    // Cells list their particles by descending id, whatever the store order, so the
+    // neighbour order (and with it every floating-point sum) survives reordering.
+    // An incremental grid keeps its cells, so only this tick's spawns, the top indices, are appended.
+    private void buildGrid(int n) {
+        if (incremental) {
+            for (int i = grid.size(); i < n; i++) {
+                grid.insert(i, particles.x(i), particles.y(i));
+            }
+            return;
+        }
+        grid.reset();
+        for (int i = 0; i < n; i++) {
+            grid.insert(i, particles.x(i), particles.y(i), particles.id(i));
         }
+        grid.build();
+    }
 
-        Vector2D vel=p_i.vel();
-        double cosBeta=r_ij.dot(vel)/(vel.length()*r_ij.length());
-        if(p_i.radius()!=r_min && cosBeta>=0){
-            firstCondition=true;
+    // The motion pass placed every particle in the incremental grid and noted those that left their cell.
+    private void relinkMovers(int n) {
+        for (int k = 0, chunks = chunks(n); k < chunks; k++) {
+            NeighbourBuffer nb = buffers[k];
+            for (int m = 0; m < nb.moved; m++) {
+                grid.relink(nb.movers[2 * m], nb.movers[2 * m + 1]);
+            }
         }
+    }
+
+    /**
+     * Registers an observer that is called after every step, on the stepping thread.
+     */
+    public void addObserver(Observer observer) {
+        observers = Arrays.copyOf(observers, observers.length + 1);
+        observers[observers.length - 1] = observer;
+    }
 
-        return firstCondition && radiiOverlap && intersectsTangentialStrip(p_i,p_j);
+    /**
+     * Builds the immutable view of the last completed tick. Only needed when a frame is emitted.
+     */
+    public SimulationState snapshot() {
+        return new SimulationState(tick, time, particles.toParticles(), ends.spawnedLeft, ends.spawnedRight);
     }
 
     /**
-     * Returns true if the circle centred at j intersects either of the two
-     * lines that are parallel to v_i and tangent to the auxiliary circle of
-     * radius r_min around i (paper Fig. 1, right panel).
+     * Runs a pass over particles [0, n). Every particle only reads the committed
+     * state and writes its own next-buffer slot, so the chunks are independent and
+     * the result is bit-identical whether they run serially or on the pool.
      */
-    private boolean intersectsTangentialStrip(Particle p_i, Particle p_j) {
-        double r_min = params.rMin();
-        Vector2D v_i = p_i.vel();
-        if (v_i.lengthSq() == 0.0) {
-            return false; // No heading ⇒ no strip
+    private void runPass(RangePass pass, int n) {
+        if (!options.isParallel() || n < MIN_PARALLEL_PARTICLES) {
+            pass.run(0, n, buffers[0]);
+            return;
         }
+        options.pool().invoke(new ChunkTask(pass, n, 0, buffers.length));
+    }
 
-        Vector2D dir = v_i.normalised();
-        Vector2D perp = dir.perpendicular();
+    // Sums the neighbour list entries and contacts of the chunks the passes of this tick used.
+    private void countWork(TickProfiler profiler, int n) {
+        int chunks = chunks(n);
+        long candidates = 0, contacts = 0;
+        for (int k = 0; k < chunks; k++) {
+            candidates += buffers[k].listed((int) ((long) n * (k + 1) / chunks));
+            contacts += buffers[k].contactsFound;
+        }
+        profiler.count(n, candidates, contacts);
+    }
 
-        Vector2D diff = p_j.pos().sub(p_i.pos());
+    // Chunks runPass splits n particles into.
+    private int chunks(int n) {
+        return !options.isParallel() || n < MIN_PARALLEL_PARTICLES ? 1 : buffers.length;
+    }
 
-        // Check if j is in front of i
-        double forward = dir.dot(diff);
-        if (forward < 0) return false;
+    private void neighbourPass(int from, int to, NeighbourBuffer nb) {
+        passes.neighbours(particles, grid, from, to, nb);
+    }
 
-        double dist = Math.abs(perp.dot(diff));
+    private void radiusPass(int from, int to, NeighbourBuffer nb) {
+        passes.radius(particles, from, to, nb, stepDt);
+    }
 
-        return dist < r_min + p_j.radius();
+    private void motionPass(int from, int to, NeighbourBuffer nb) {
+        passes.motion(particles, from, to, nb, stepDt, incremental ? grid : null);
     }
 
+    private boolean isCollidingWall(int i){
+        double y = particles.y(i);
+        double wallCoord=y>W/2?W:0;
+        return Math.abs(wallCoord-y)<params.rMin();
 
+    }
 
     private void spawn() {
-        // Calculate the expected number of particles to spawn per side this tick
-        double inflowPerTick = params.inflowPerSide() * params.dt();
-        countL += inflowPerTick;
-        countR += inflowPerTick;
-
-        int spawnLeftCount = (int) countL;
-        countL -= spawnLeftCount;
-        for (int i = 0; i < spawnLeftCount; i++) {
-            spawnLeft();
+        if (admission != null) {
+            admission.clear();
         }
+        ends.spawn(params, lastDt, rng, entrance, admission);
+    }
 
-        int spawnRightCount = (int) countR;
-        countR -= spawnRightCount;
-        for (int i = 0; i < spawnRightCount; i++) {
-            spawnRight();
-        }
-        pedestriansSpawnedRight += spawnRightCount;
-        pedestriansSpawnedLeft += spawnLeftCount;
+    private void enter(double x, double y, double vx, double r, int goalSign, int begin) {
+        particles.add(nextId++, x, y, vx, 0, r, goalSign, begin);
     }
 
-    private void spawnLeft() {
-        if (pedestriansSpawnedLeft>=100) {
-            return;
-        }
-        particles.add(initParticle(+params.vMax(), params.rMax(), LEFT));
+    /**
+     * Places a pedestrian directly, e.g. to start from a prepared crowd instead of an empty
+     * corridor. It walks towards the right exit if {@code goalSign > 0}, else towards the left one,
+     * starting at full radius. Spawn and exit counters are not affected.
+     *
+     * @return the id of the new pedestrian
+     */
+    public int addPedestrian(double x, double y, double vx, double vy, int goalSign) {
+        int id = nextId++;
+        particles.add(id, x, y, vx, vy, params.rMax(), goalSign > 0 ? 1 : -1, goalSign > 0 ? LEFT : RIGHT);
+        return id;
     }
 
-    private void spawnRight() {
-        if (pedestriansSpawnedRight>=100) {
-            return;
-        }
-        particles.add(initParticle(-params.vMax(), params.rMax(), RIGHT));
+    public int particleCount() {
+        return particles.size();
     }
 
-    private Particle initParticle(double vx, double r, int begin) {
-        double y = rng.nextDouble(params.rMin(),W-params.rMin());
-        double x = (vx > 0 ? rng.nextDouble(-0.5,0) : rng.nextDouble(L,L+0.5));   // spawn just outside, slide in next tick
-        int goalSign = vx > 0 ? 1 : -1;
-        return new Particle(nextId++, Vector2D.of(x, y), Vector2D.of(vx, 0), r, goalSign, begin);
+    private boolean hasExited(int i) {
+        return CorridorEnds.hasExited(particles, i, L);
     }
 
-    private void removeExited() {
-        Iterator<Particle> it = particles.iterator();
-        while (it.hasNext()) {
-            Particle p = it.next();
-            if (p.begin() == LEFT && p.pos().x() >= L
-                    || p.begin() == RIGHT && p.pos().x() <= 0) {
-                it.remove();
-                if (p.begin() == LEFT) {
+    // Exits are tallied as soon as they happen, but the particles stay in the
+    // store (and in the snapshot of this tick) until the next step.
+    private void countExited(double t) {
+        for (int i = 0; i < particles.size(); i++) {
+            if (hasExited(i)) {
+                exitedPending = true;
+                for (Observer observer : observers) {
+                    observer.onExit(particles.id(i), particles.goalSign(i), t);
+                }
+                if (particles.begin(i) == LEFT) {
                     pedestriansExitLeft++;
                 }
-                if (p.begin() == RIGHT) {
+                if (particles.begin(i) == RIGHT) {
                     pedestriansExitRight++;
                 }
-
             }
         }
     }
 
+    // One compaction pass, keeping the survivors in id order.
+    private void removeExited() {
+        if (incremental) {
+            grid.removeIf(this::hasExited);
+        }
+        particles.removeIf(this::hasExited);
+        exitedPending = false;
+    }
+
     public boolean isFinished() {
-        return pedestriansExitRight >= 100 && pedestriansExitLeft >= 100;
+        return CorridorEnds.isFinished(params, pedestriansExitLeft, pedestriansExitRight);
+    }
+
+    @FunctionalInterface
+    private interface RangePass {
+        void run(int from, int to, NeighbourBuffer nb);
     }
 
-    private List<Particle> getNeighbors(int idxSelf) {
-        neighborIndices.clear();
-        grid.forEachNeighbour(particles.get(idxSelf).pos(), j -> {
-            if (j != idxSelf) {
-                neighborIndices.add(j);
+    // Splits chunks [lo, hi) of a pass over n particles until a single chunk is left.
+    @SuppressWarnings("serial")
+    private final class ChunkTask extends RecursiveAction {
+        private final RangePass pass;
+        private final int n, lo, hi;
+
+        ChunkTask(RangePass pass, int n, int lo, int hi) {
+            this.pass = pass;
+            this.n = n;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo == 1) {
+                int from = (int) ((long) n * lo / buffers.length);
+                int to = (int) ((long) n * hi / buffers.length);
+                pass.run(from, to, buffers[lo]);
+                return;
             }
-        });
-        List<Particle> result = new ArrayList<>(neighborIndices.size());
-        for (int j : neighborIndices) {
-            result.add(particles.get(j));
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new ChunkTask(pass, n, lo, mid), new ChunkTask(pass, n, mid, hi));
         }
-        return result;
     }
 
 }
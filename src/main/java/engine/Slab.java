@@ -0,0 +1,207 @@
+package engine;
+
+import model.Particle;
+import model.ParticleStore;
+import space.CellGrid;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One slab of a {@link DecomposedEngine}: the pedestrians in the grid columns
+ * [firstColumn, endColumn), at [0, owned) of the slab's own store, followed by the halo:
+ * copies of the neighbouring slabs' boundary columns, rebuilt every tick and never stepped.
+ * <p>
+ * A tick runs in phases, each on every slab before the next one starts:
+ * {@link #shed}, then the engine delivers spawns and emigrants, {@link #exportBoundaries},
+ * {@link #radiusPhase} and {@link #motionPhase}. Within a phase a slab writes only its own
+ * state and reads only what its neighbours finished writing in an earlier phase.
+ */
+final class Slab {
+    final int firstColumn, endColumn;
+    final ParticleStore particles;
+    // Particles that left the slab's columns, waiting to be handed to their new slab.
+    final ParticleStore emigrants = new ParticleStore(16);
+    // The first and last owned column as the left and right neighbour see them.
+    final Boundary toLeft = new Boundary(), toRight = new Boundary();
+    private final boolean hasLeft, hasRight;
+    private final double L, cellSize;
+    private final int columns;
+    private final CellGrid grid;
+    private final NeighbourBuffer nb;
+    private final Passes passes;
+    private int owned = 0;
+    // Halo particles copied from the left neighbour; those from the right one follow them.
+    private int haloFromLeft = 0;
+    int exitedLeft, exitedRight;
+
+    Slab(int firstColumn, int endColumn, int columns, double cellSize, double L, double W, Passes passes,
+         ContactKernel kernel, int capacity) {
+        this.firstColumn = firstColumn;
+        this.endColumn = endColumn;
+        this.columns = columns;
+        this.cellSize = cellSize;
+        this.L = L;
+        this.hasLeft = firstColumn > 0;
+        this.hasRight = endColumn < columns;
+        this.particles = new ParticleStore(capacity);
+        int gridFirst = hasLeft ? firstColumn - 1 : firstColumn;
+        int gridEnd = hasRight ? endColumn + 1 : endColumn;
+        this.grid = new CellGrid(gridFirst, gridEnd - gridFirst, W, cellSize, capacity, CellGrid.Layout.SORTED);
+        this.nb = new NeighbourBuffer(kernel);
+        this.passes = passes;
+    }
+
+    // Grid column of x in the undivided corridor, the same cell CellGrid puts it in.
+    static int column(double x, double cellSize, int columns) {
+        return Math.min(Math.max((int) (x / cellSize), 0), columns - 1);
+    }
+
+    int owned() {
+        return owned;
+    }
+
+    void add(int id, double x, double y, double vx, double vy, double r, int goalSign, int begin) {
+        particles.add(id, x, y, vx, vy, r, goalSign, begin);
+        owned++;
+    }
+
+    void receive(ParticleStore from, int i) {
+        particles.add(from, i);
+        owned++;
+    }
+
+    /**
+     * Drops the halo and, if {@code removeExited}, the pedestrians counted as exited last
+     * tick, and moves every pedestrian no longer in this slab's columns to the emigrants.
+     */
+    void shed(boolean removeExited) {
+        particles.truncate(owned);
+        emigrants.truncate(0);
+        particles.removeIf(i -> {
+            if (removeExited && CorridorEnds.hasExited(particles, i, L)) {
+                return true;
+            }
+            int c = column(particles.x(i), cellSize, columns);
+            if (c >= firstColumn && c < endColumn) {
+                return false;
+            }
+            emigrants.add(particles, i);
+            return true;
+        });
+        owned = particles.size();
+    }
+
+    void exportBoundaries() {
+        toLeft.clear();
+        toRight.clear();
+        for (int i = 0; i < owned; i++) {
+            int c = column(particles.x(i), cellSize, columns);
+            if (hasLeft && c == firstColumn) {
+                toLeft.add(particles, i);
+            }
+            if (hasRight && c == endColumn - 1) {
+                toRight.add(particles, i);
+            }
+        }
+    }
+
+    /**
+     * Appends the halo from the neighbours' boundaries, builds the grid over owned and
+     * halo particles and runs the neighbour and radius passes over the owned ones.
+     * Cells list particles by descending id, so every owned particle sees its neighbours
+     * in the same order as in the undivided corridor.
+     */
+    void radiusPhase(Slab left, Slab right, double dt) {
+        if (left != null) {
+            for (int k = 0; k < left.toRight.copies.size(); k++) {
+                particles.add(left.toRight.copies, k);
+            }
+        }
+        haloFromLeft = particles.size() - owned;
+        if (right != null) {
+            for (int k = 0; k < right.toLeft.copies.size(); k++) {
+                particles.add(right.toLeft.copies, k);
+            }
+        }
+        int n = particles.size();
+        grid.reset();
+        for (int i = 0; i < n; i++) {
+            grid.insert(i, particles.x(i), particles.y(i), particles.id(i));
+        }
+        grid.build();
+
+        passes.neighbours(particles, grid, 0, owned, nb);
+        passes.radius(particles, 0, owned, nb, dt);
+        particles.commitRadius();
+        toLeft.publishRadii(particles);
+        toRight.publishRadii(particles);
+    }
+
+    /**
+     * Brings the halo radii up to date with the neighbours' radius pass, then runs the
+     * motion pass over the owned particles and counts those that reached their exit.
+     */
+    void motionPhase(Slab left, Slab right, double dt) {
+        if (left != null) {
+            for (int k = 0; k < haloFromLeft; k++) {
+                particles.setRadius(owned + k, left.toRight.radius[k]);
+            }
+        }
+        if (right != null) {
+            for (int k = 0, at = owned + haloFromLeft; at < particles.size(); k++, at++) {
+                particles.setRadius(at, right.toLeft.radius[k]);
+            }
+        }
+        passes.motion(particles, 0, owned, nb, dt, null);
+        particles.commitMotion();
+
+        exitedLeft = 0;
+        exitedRight = 0;
+        for (int i = 0; i < owned; i++) {
+            if (CorridorEnds.hasExited(particles, i, L)) {
+                if (particles.begin(i) == CorridorEnds.LEFT) {
+                    exitedLeft++;
+                } else {
+                    exitedRight++;
+                }
+            }
+        }
+    }
+
+    void collect(List<Particle> out) {
+        for (int i = 0; i < owned; i++) {
+            out.add(particles.particle(i));
+        }
+    }
+
+    /**
+     * Copies of one boundary column, and where they sit in the owner's store so the
+     * owner can publish their new radii once its radius pass is done.
+     */
+    static final class Boundary {
+        final ParticleStore copies = new ParticleStore(64);
+        private int[] source = new int[64];
+        double[] radius = new double[64];
+
+        void clear() {
+            copies.truncate(0);
+        }
+
+        void add(ParticleStore from, int i) {
+            int k = copies.add(from, i);
+            if (k == source.length) {
+                source = Arrays.copyOf(source, 2 * k);
+                radius = Arrays.copyOf(radius, 2 * k);
+            }
+            source[k] = i;
+        }
+
+        // Radii are published apart from the copies, which neighbours may still be reading.
+        void publishRadii(ParticleStore from) {
+            for (int k = 0; k < copies.size(); k++) {
+                radius[k] = from.radius(source[k]);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package engine;
+
+import model.Parameters;
+import model.ParticleStore;
+import space.CellGrid;
+
+import java.util.Arrays;
+
+/**
+ * Occupancy of both corridor ends, for {@link Parameters#spawnAdmission()}: a spawn is
+ * admitted only if its disc overlaps no pedestrian near its entrance, including the ones
+ * admitted before it in the same tick.
+ * <p>
+ * Each end is a two-column band grid of the engine's cell size, which holds every disc a
+ * spawn just outside the corridor can touch. The bands are filled by the engine's
+ * {@link Occupants} on the first admission test after {@link #clear()}, so a tick that
+ * spawns nobody skips the pass over the particles; each test then only looks at the few
+ * cells around the spawn.
+ */
+final class SpawnAdmission {
+    private final double L, rMax, cellSize;
+    private final CellGrid left, right;
+    // Occupant discs; the band grids hold indices into these.
+    private double[] x = new double[64], y = new double[64], r = new double[64];
+    private int[] found = new int[16];
+    private int count = 0;
+    private final Occupants occupants;
+    private boolean filled = false;
+
+    // Occupies every pedestrian of the engine, through occupy(...).
+    @FunctionalInterface
+    interface Occupants {
+        void fill(SpawnAdmission admission);
+    }
+
+    SpawnAdmission(Parameters params, double cellSize, Occupants occupants) {
+        this.occupants = occupants;
+        this.L = params.corridorLength();
+        this.rMax = params.rMax();
+        this.cellSize = cellSize;
+        int columns = CellGrid.columns(L, cellSize), band = Math.min(2, columns);
+        this.left = new CellGrid(0, band, params.corridorWidth(), cellSize, 64, CellGrid.Layout.LINKED);
+        this.right = new CellGrid(columns - band, band, params.corridorWidth(), cellSize, 64, CellGrid.Layout.LINKED);
+    }
+
+    // Forgets the occupants; they are collected again when the next spawn is tested.
+    void clear() {
+        filled = false;
+    }
+
+    private void fill() {
+        count = 0;
+        left.reset();
+        right.reset();
+        filled = true;
+        occupants.fill(this);
+    }
+
+    // Occupies the discs of particles [from, to) that lie within reach of an entrance.
+    void occupy(ParticleStore particles, int from, int to) {
+        for (int i = from; i < to; i++) {
+            occupy(particles.x(i), particles.y(i), particles.radius(i));
+        }
+    }
+
+    void occupy(double px, double py, double pr) {
+        boolean nearLeft = px < 2 * cellSize, nearRight = px >= right.firstColumn() * cellSize;
+        if (!nearLeft && !nearRight) {
+            return;
+        }
+        if (count == x.length) {
+            x = Arrays.copyOf(x, 2 * count);
+            y = Arrays.copyOf(y, 2 * count);
+            r = Arrays.copyOf(r, 2 * count);
+        }
+        x[count] = px;
+        y[count] = py;
+        r[count] = pr;
+        if (nearLeft) {
+            left.insert(count, px, py);
+        }
+        if (nearRight) {
+            right.insert(count, px, py);
+        }
+        count++;
+    }
+
+    /**
+     * Whether a disc of radius {@code pr} at (px, py) overlaps no occupant; if so it
+     * becomes an occupant itself.
+     */
+    boolean admit(double px, double py, double pr) {
+        if (!filled) {
+            fill();
+        }
+        CellGrid band = px < L / 2 ? left : right;
+        int n = band.within(-1, px, py, pr + rMax, found, 0);
+        if (n > found.length) {
+            found = new int[Math.max(n, 2 * found.length)];
+            band.within(-1, px, py, pr + rMax, found, 0);
+        }
+        for (int k = 0; k < n; k++) {
+            int j = found[k];
+            double dx = x[j] - px, dy = y[j] - py, reach = r[j] + pr;
+            if (dx * dx + dy * dy < reach * reach) {
+                return false;
+            }
+        }
+        occupy(px, py, pr);
+        return true;
+    }
+}
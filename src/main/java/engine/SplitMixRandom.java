@@ -0,0 +1,90 @@
+package engine;
+
+import java.util.random.RandomGenerator;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * SplitMix64 generator (the algorithm behind {@link java.util.SplittableRandom}) whose
+ * state is accessible, so a run can be reproduced from its seed and resumed from
+ * {@link #state()} / {@link #gamma()}. {@link #split()} yields statistically independent
+ * streams, e.g. one per ensemble member or worker thread.
+ */
+public final class SplitMixRandom implements RandomGenerator.SplittableGenerator {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long seed;
+    private final long gamma;
+
+    public SplitMixRandom(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    // Restores a generator from state() and gamma(); gamma must be odd.
+    public SplitMixRandom(long state, long gamma) {
+        if ((gamma & 1L) == 0) {
+            throw new IllegalArgumentException("gamma must be odd");
+        }
+        this.seed = state;
+        this.gamma = gamma;
+    }
+
+    public long state() {
+        return seed;
+    }
+
+    public long gamma() {
+        return gamma;
+    }
+
+    @Override
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    @Override
+    public SplitMixRandom split() {
+        return new SplitMixRandom(nextLong(), mixGamma(nextSeed()));
+    }
+
+    @Override
+    public SplitMixRandom split(SplittableGenerator source) {
+        return new SplitMixRandom(source.nextLong(), mixGamma(source.nextLong()));
+    }
+
+    @Override
+    public Stream<SplittableGenerator> splits(long streamSize) {
+        return splits(streamSize, this);
+    }
+
+    @Override
+    public Stream<SplittableGenerator> splits(SplittableGenerator source) {
+        return splits(Long.MAX_VALUE, source);
+    }
+
+    @Override
+    public Stream<SplittableGenerator> splits(long streamSize, SplittableGenerator source) {
+        if (streamSize < 0) {
+            throw new IllegalArgumentException("streamSize must be non-negative");
+        }
+        return LongStream.range(0, streamSize).mapToObj(k -> split(source));
+    }
+
+    private long nextSeed() {
+        return seed += gamma;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
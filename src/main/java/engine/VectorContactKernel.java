@@ -0,0 +1,79 @@
+package engine;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import model.ParticleStore;
+
+/**
+ * {@link ScalarContactKernel} over SIMD lanes: the neighbours' positions and radii are
+ * gathered into contiguous arrays, then distances, the overlap, the heading cone and the
+ * strip test are evaluated a whole vector at a time. Every lane does the same IEEE
+ * operations as the scalar code, so the contact masks are identical. Neighbourhoods smaller
+ * than one vector, and the leftovers past the last full one, go through the scalar test.
+ * <p>
+ * Loaded through {@link ContactKernel#VECTOR}, never referenced directly.
+ */
+final class VectorContactKernel implements ContactKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private final double rMin;
+    private final ScalarContactKernel scalar;
+    private double[] xs = new double[64], ys = new double[64], rs = new double[64];
+
+    VectorContactKernel(double rMin) {
+        this.rMin = rMin;
+        this.scalar = new ScalarContactKernel(rMin);
+    }
+
+    @Override
+    public int contacts(ParticleStore s, int i, int[] neighbours, int start, int count, int[] out) {
+        if (count < SPECIES.length()) {
+            return scalar.contacts(s, i, neighbours, start, count, out); // not even one full vector
+        }
+        double xi = s.x(i), yi = s.y(i), ri = s.radius(i), vx = s.vx(i), vy = s.vy(i);
+        double speedSq = vx * vx + vy * vy;
+        boolean atMin = ri == rMin;
+        if (!atMin && speedSq == 0.0) {
+            return 0; // neither the cone nor the strip exists without a heading
+        }
+        if (xs.length < count) {
+            int capacity = Math.max(count, xs.length * 2);
+            xs = new double[capacity];
+            ys = new double[capacity];
+            rs = new double[capacity];
+        }
+        s.gather(neighbours, start, count, xs, ys, rs);
+
+        double speed = Math.sqrt(speedSq);
+        double dirX = vx / speed, dirY = vy / speed;
+        int found = 0;
+        int k = 0;
+        for (int bound = SPECIES.loopBound(count); k < bound; k += SPECIES.length()) {
+            DoubleVector rx = DoubleVector.fromArray(SPECIES, xs, k).sub(xi);
+            DoubleVector ry = DoubleVector.fromArray(SPECIES, ys, k).sub(yi);
+            DoubleVector rj = DoubleVector.fromArray(SPECIES, rs, k);
+            DoubleVector dist = rx.mul(rx).add(ry.mul(ry)).lanewise(VectorOperators.SQRT);
+            VectorMask<Double> contact = dist.lt(rj.add(ri));
+            if (!atMin) {
+                DoubleVector cosBeta = rx.mul(vx).add(ry.mul(vy)).div(dist.mul(speed));
+                DoubleVector forward = rx.mul(dirX).add(ry.mul(dirY));
+                DoubleVector line = rx.mul(-dirY).add(ry.mul(dirX)).abs();
+                contact = contact
+                        .and(cosBeta.compare(VectorOperators.GE, 0.0))
+                        .andNot(forward.lt(0.0))
+                        .and(line.lt(rj.add(rMin)));
+            }
+            for (long bits = contact.toLong(); bits != 0; bits &= bits - 1) {
+                out[found++] = neighbours[start + k + Long.numberOfTrailingZeros(bits)];
+            }
+        }
+        for (; k < count; k++) {
+            if (ScalarContactKernel.areColliding(rMin, xi, yi, ri, vx, vy, xs[k], ys[k], rs[k])) {
+                out[found++] = neighbours[start + k];
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,325 @@
+package ensemble;
+
+import engine.EngineOptions;
+import engine.SimulationEngine;
+import engine.SplitMixRandom;
+import model.Parameters;
+import observe.ObservationSummary;
+import observe.Observer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Searches the points of a {@link ParameterSweep} for the one whose mean {@link Objective}
+ * comes closest to a target, running as few simulations as the statistics allow.
+ * <p>
+ * The search is successive halving: every candidate first gets {@code initialRuns} runs,
+ * then the closer 1 / eta of them go on to eta times as many, and so on up to
+ * {@code maxRuns}. On top of that, a candidate is dropped as soon as its confidence
+ * interval rules it out: once even the nearest end of its interval lies farther from the
+ * target than the farthest end of the leading candidate's. Its queued and running
+ * simulations are cancelled then.
+ * <p>
+ * Run k of every candidate uses the same seed, drawn from the calibration seed, so
+ * candidates are compared on the same random streams. Results are consumed in submission
+ * order, so what gets dropped and which point wins do not depend on scheduling. With a
+ * {@link ResultCache}, runs found in it are not simulated again: repeating a calibration
+ * costs no simulation at all.
+ */
+public final class Calibration implements AutoCloseable {
+    private final ExecutorService pool;
+    private final int maxParticles;
+    // Runs submitted ahead of the one whose result is awaited.
+    private final int ahead;
+    private int initialRuns = 2, eta = 2, maxRuns = 32;
+    private double z = 1.96;
+    private double maxTime = Double.POSITIVE_INFINITY;
+    private ResultCache cache = null;
+
+    public Calibration(int threads) {
+        this(threads, EnsembleRunner.DEFAULT_MAX_PARTICLES);
+    }
+
+    public Calibration(int threads, int maxParticles) {
+        this.pool = Executors.newFixedThreadPool(threads);
+        this.maxParticles = maxParticles;
+        this.ahead = 2 * threads;
+    }
+
+    public static Calibration usingAllCores() {
+        return new Calibration(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Runs per candidate in the first round, the factor by which rounds shrink the field and
+     * grow the runs, and the runs a candidate gets at most.
+     */
+    public Calibration halving(int initialRuns, int eta, int maxRuns) {
+        if (initialRuns < 2 || eta < 2 || maxRuns < initialRuns) {
+            throw new IllegalArgumentException("Need initialRuns >= 2, eta >= 2 and maxRuns >= initialRuns");
+        }
+        this.initialRuns = initialRuns;
+        this.eta = eta;
+        this.maxRuns = maxRuns;
+        return this;
+    }
+
+    /**
+     * Half-width of the confidence intervals in standard errors, 1.96 (95 %) by default.
+     */
+    public Calibration confidence(double z) {
+        this.z = z;
+        return this;
+    }
+
+    /**
+     * Stops every run after this much simulated time, e.g. one stuck in a jam. The default is no limit.
+     */
+    public Calibration maxTime(double seconds) {
+        this.maxTime = seconds;
+        return this;
+    }
+
+    public Calibration cache(ResultCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * Calibrates the points of {@code sweep} against {@code target} and blocks until done.
+     *
+     * @return every candidate, closest first
+     */
+    public Result run(ParameterSweep sweep, Objective objective, double target, long seed)
+            throws IOException, InterruptedException {
+        List<Candidate> field = new ArrayList<>();
+        for (SweepPoint point : sweep.points()) {
+            field.add(new Candidate(point));
+        }
+        long[] seeds = new long[maxRuns];
+        SplitMixRandom seedStream = new SplitMixRandom(seed);
+        for (int k = 0; k < maxRuns; k++) {
+            seeds[k] = seedStream.nextLong();
+        }
+        double stopAt = Math.min(objective.horizon(), maxTime);
+        Counts counts = new Counts();
+
+        List<Candidate> alive = new ArrayList<>(field);
+        int done = 0;
+        for (int runs = initialRuns; ; runs = (int) Math.min((long) runs * eta, maxRuns)) {
+            runRound(alive, done, runs, seeds, objective, target, stopAt, counts);
+            done = runs;
+            alive.removeIf(c -> c.dropped);
+            alive.forEach(c -> c.rounds++);
+            if (alive.size() <= 1 || runs == maxRuns) {
+                break;
+            }
+            alive.sort(byDistance(target));
+            for (Candidate c : alive.subList((alive.size() + eta - 1) / eta, alive.size())) {
+                c.dropped = true;
+            }
+            alive.removeIf(c -> c.dropped);
+        }
+
+        List<Calibrated> ranked = new ArrayList<>();
+        field.sort(Comparator.comparing((Candidate c) -> c.dropped).thenComparingInt(c -> -c.rounds)
+                .thenComparing(byDistance(target)));
+        for (Candidate c : field) {
+            ranked.add(new Calibrated(c.point, c.stats, c.rounds, c.dropped));
+        }
+        return new Result(ranked, counts.simulated, counts.cached, counts.cancelled);
+    }
+
+    /**
+     * Gives every candidate of {@code alive} runs [from, to), dropping those whose
+     * interval rules them out as their results come in. Simulations are submitted at most
+     * {@code ahead} runs past the one being consumed, so a dropped candidate's later runs
+     * mostly never start.
+     */
+    private void runRound(List<Candidate> alive, int from, int to, long[] seeds, Objective objective,
+                          double target, double stopAt, Counts counts) throws IOException, InterruptedException {
+        List<Candidate> owners = new ArrayList<>();
+        List<Parameters> params = new ArrayList<>();
+        List<Map<String, Double>> cached = new ArrayList<>();
+        for (int k = from; k < to; k++) {
+            for (Candidate c : alive) {
+                Parameters p = c.point.parameters().withSeed(seeds[k]);
+                Map<String, Double> summary = cache == null ? null : cache.get(p);
+                owners.add(c);
+                params.add(p);
+                cached.add(summary != null && objective.isIn(summary) && covers(summary, stopAt) ? summary : null);
+            }
+        }
+
+        List<Future<Map<String, Double>>> runs = new ArrayList<>();
+        boolean complete = false;
+        try {
+            for (int k = 0; k < owners.size(); k++) {
+                for (int s = runs.size(); s < Math.min(k + ahead, owners.size()); s++) {
+                    Candidate c = owners.get(s);
+                    Parameters p = params.get(s);
+                    runs.add(c.dropped || cached.get(s) != null ? null : pool.submit(() -> simulate(p, objective, stopAt)));
+                    if (runs.getLast() != null) {
+                        c.pending.add(runs.getLast());
+                    }
+                }
+                Candidate c = owners.get(k);
+                if (c.dropped) {
+                    continue;
+                }
+                Map<String, Double> summary = cached.get(k);
+                if (summary != null) {
+                    counts.cached++;
+                } else {
+                    summary = runs.get(k).get();
+                    c.pending.remove(runs.get(k));
+                    counts.simulated++;
+                    if (cache != null) {
+                        cache.put(params.get(k), summary);
+                    }
+                }
+                double value = objective.value(summary);
+                if (!Double.isNaN(value)) {
+                    c.stats.add(value);
+                }
+                dropRuledOut(alive, target, counts);
+            }
+            complete = true;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            // A failed run or an interrupt would otherwise leave the submitted simulations running until close().
+            if (!complete) {
+                runs.forEach(f -> {
+                    if (f != null) {
+                        f.cancel(true);
+                    }
+                });
+            }
+        }
+    }
+
+    // Drops every candidate whose interval lies wholly farther from the target than the leader's.
+    private void dropRuledOut(List<Candidate> alive, double target, Counts counts) {
+        Candidate leader = null;
+        for (Candidate c : alive) {
+            if (!c.dropped && c.stats.count() >= 2
+                    && (leader == null || distance(c, target) < distance(leader, target))) {
+                leader = c;
+            }
+        }
+        if (leader == null) {
+            return;
+        }
+        double reach = distance(leader, target) + z * leader.stats.sem();
+        for (Candidate c : alive) {
+            if (c != leader && !c.dropped && c.stats.count() >= 2
+                    && distance(c, target) - z * c.stats.sem() > reach) {
+                c.dropped = true;
+                for (Future<Map<String, Double>> run : c.pending) {
+                    if (run.cancel(true)) {
+                        counts.cancelled++;
+                    }
+                }
+                c.pending.clear();
+            }
+        }
+    }
+
+    private static double distance(Candidate c, double target) {
+        return c.stats.count() == 0 ? Double.POSITIVE_INFINITY : Math.abs(c.stats.mean() - target);
+    }
+
+    private static Comparator<Candidate> byDistance(double target) {
+        return Comparator.comparingDouble((Candidate c) -> distance(c, target)).thenComparingInt(c -> c.point.index());
+    }
+
+    // Whether a cached run went on long enough: to the end, or past stopAt.
+    private static boolean covers(Map<String, Double> summary, double stopAt) {
+        Double time = summary.get(Objective.RUN_TIME), finished = summary.get(Objective.RUN_FINISHED);
+        return time != null && finished != null && (finished == 1.0 || time > stopAt);
+    }
+
+    /**
+     * Runs one simulation, seeded by {@link Parameters#seed()}, until every pedestrian left
+     * the corridor or simulated time passed {@code stopAt}, and returns its observers'
+     * summary with {@link Objective#RUN_TIME} and {@link Objective#RUN_FINISHED}.
+     */
+    private Map<String, Double> simulate(Parameters p, Objective objective, double stopAt) {
+        SimulationEngine engine = new SimulationEngine(p, maxParticles, EngineOptions.serial());
+        List<Observer> observers = objective.observers(p);
+        observers.forEach(engine::addObserver);
+        while (!engine.isFinished() && engine.nextTime() <= stopAt) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Calibration run cancelled");
+            }
+            engine.step(engine.nextTick(), engine.nextTime());
+        }
+        Map<String, Double> summary = new LinkedHashMap<>(ObservationSummary.collect(observers));
+        summary.put(Objective.RUN_TIME, engine.nextTime());
+        summary.put(Objective.RUN_FINISHED, engine.isFinished() ? 1.0 : 0.0);
+        return summary;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * One calibrated sweep point.
+     *
+     * @param stats   the objective over the point's runs
+     * @param rounds  halving rounds the point took part in to the end
+     * @param dropped whether the point was dropped before the last round
+     */
+    public record Calibrated(SweepPoint point, EvacuationStats stats, int rounds, boolean dropped) {
+    }
+
+    /**
+     * @param candidates every sweep point, the points still in at the end first, closest first
+     * @param simulated  runs simulated and used
+     * @param cached     runs taken from the cache
+     * @param cancelled  runs already submitted when their point was dropped, and cancelled
+     */
+    public record Result(List<Calibrated> candidates, int simulated, int cached, int cancelled) {
+
+        public Calibrated best() {
+            return candidates.getFirst();
+        }
+    }
+
+    private static final class Candidate {
+        final SweepPoint point;
+        final EvacuationStats stats = new EvacuationStats();
+        // Simulations submitted and not consumed yet.
+        final List<Future<Map<String, Double>>> pending = new ArrayList<>();
+        int rounds = 0;
+        boolean dropped = false;
+
+        Candidate(SweepPoint point) {
+            this.point = point;
+        }
+    }
+
+    private static final class Counts {
+        int simulated, cached, cancelled;
+    }
+}
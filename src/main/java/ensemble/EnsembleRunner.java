@@ -0,0 +1,228 @@
+package ensemble;
+
+import engine.EngineOptions;
+import engine.SimulationEngine;
+import engine.SplitMixRandom;
+import io.FrameSink;
+import model.Parameters;
+import observe.ObservationSummary;
+import observe.Observer;
+import profile.Phase;
+import profile.TickProfiler;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Runs every point of a {@link ParameterSweep} a number of times, concurrently on a
+ * fixed pool, and aggregates the evacuation times in memory.
+ * <p>
+ * Each run gets its own seed drawn from the ensemble seed in submission order, so an
+ * ensemble is reproducible regardless of how the runs get scheduled. Runs that write
+ * frames first take one of a bounded number of writer permits, so the pool cannot get
+ * arbitrarily far ahead of the disk.
+ */
+public final class EnsembleRunner implements AutoCloseable {
+    public static final int DEFAULT_MAX_PARTICLES = 20_000;
+
+    private final ExecutorService pool;
+    private final Semaphore writers;
+    private final int maxParticles;
+    private Function<Parameters, List<Observer>> observers = p -> List.of();
+    private Function<Parameters, EngineOptions> engineOptions = p -> EngineOptions.serial();
+    private OutputPaths summaries = null;
+
+    /**
+     * Where the frames of a run go, or {@code null} to skip writing them.
+     */
+    @FunctionalInterface
+    public interface OutputPaths {
+        Path pathFor(SweepPoint point, int repetition);
+    }
+
+    public EnsembleRunner(int threads, int maxConcurrentWriters) {
+        this(threads, maxConcurrentWriters, DEFAULT_MAX_PARTICLES);
+    }
+
+    public EnsembleRunner(int threads, int maxConcurrentWriters, int maxParticles) {
+        this.pool = Executors.newFixedThreadPool(threads);
+        this.writers = new Semaphore(maxConcurrentWriters);
+        this.maxParticles = maxParticles;
+    }
+
+    // One thread per core; lower maxConcurrentWriters when the disk, not the CPU, is the bottleneck.
+    public static EnsembleRunner usingAllCores(int maxConcurrentWriters) {
+        return new EnsembleRunner(Runtime.getRuntime().availableProcessors(), maxConcurrentWriters);
+    }
+
+    // One thread per core, every run writing at once: for sinks that hold runs back themselves, such as a blocking AsyncFrameSink.
+    public static EnsembleRunner usingAllCores() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return new EnsembleRunner(cores, cores);
+    }
+
+    /**
+     * Attaches fresh observers to every following run and writes their
+     * {@link ObservationSummary} to the path given by {@code summaries} (if non-null). Combined
+     * with a {@code null} frame output, a sweep then writes a few hundred bytes per run.
+     */
+    public EnsembleRunner observe(Function<Parameters, List<Observer>> observers, OutputPaths summaries) {
+        this.observers = observers;
+        this.summaries = summaries;
+        return this;
+    }
+
+    /**
+     * Builds the engine options of every following run, e.g. to give each its own
+     * {@link TickProfiler}. Runs are serial by default, the pool already keeps every core busy.
+     */
+    public EnsembleRunner engineOptions(Function<Parameters, EngineOptions> engineOptions) {
+        this.engineOptions = engineOptions;
+        return this;
+    }
+
+    /**
+     * Runs {@code repetitions} simulations (numbered from 1) of every sweep point and
+     * blocks until all of them finished.
+     *
+     * @return the evacuation time statistics of each point, in sweep order
+     */
+    public Map<SweepPoint, EvacuationStats> run(ParameterSweep sweep, int repetitions, long seed, OutputPaths output)
+            throws IOException, InterruptedException {
+        return run(sweep, repetitions, seed, output, FrameSink.CSV);
+    }
+
+    /**
+     * Same as {@link #run(ParameterSweep, int, long, OutputPaths)}, writing frames through {@code sinks}.
+     */
+    public Map<SweepPoint, EvacuationStats> run(ParameterSweep sweep, int repetitions, long seed, OutputPaths output,
+                                                FrameSink.Factory sinks) throws IOException, InterruptedException {
+        List<SweepPoint> points = sweep.points();
+        Map<SweepPoint, EvacuationStats> stats = new LinkedHashMap<>();
+        for (SweepPoint point : points) {
+            stats.put(point, new EvacuationStats());
+        }
+
+        SplitMixRandom seeds = new SplitMixRandom(seed);
+        List<SweepPoint> runPoints = new ArrayList<>(points.size() * repetitions);
+        List<Future<Double>> runs = new ArrayList<>(points.size() * repetitions);
+        for (int rep = 1; rep <= repetitions; rep++) {
+            for (SweepPoint point : points) {
+                long runSeed = seeds.nextLong();
+                Path path = output == null ? null : output.pathFor(point, rep);
+                Path summary = summaries == null ? null : summaries.pathFor(point, rep);
+                runPoints.add(point);
+                runs.add(pool.submit(() -> simulate(point.parameters().withSeed(runSeed), path, sinks, summary)));
+            }
+        }
+
+        // Aggregated in submission order, so the statistics do not depend on scheduling either.
+        boolean complete = false;
+        try {
+            for (int k = 0; k < runs.size(); k++) {
+                stats.get(runPoints.get(k)).add(runs.get(k).get());
+            }
+            complete = true;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            // A failed run or an interrupt leaves the rest queued or running, still writing files.
+            if (!complete) {
+                runs.forEach(f -> f.cancel(true));
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Runs one simulation, seeded by {@link Parameters#seed()}, until every pedestrian left the corridor.
+     *
+     * @param output  file for the frames, or {@code null} to write none
+     * @param summary file for the observer summary, or {@code null} to write none
+     * @return the evacuation time in seconds
+     */
+    public double simulate(Parameters p, Path output, FrameSink.Factory sinks, Path summary) throws IOException {
+        SimulationEngine engine = new SimulationEngine(p, maxParticles, engineOptions.apply(p));
+        List<Observer> runObservers = observers.apply(p);
+        runObservers.forEach(engine::addObserver);
+        double time;
+        if (output == null) {
+            time = advanceToEnd(engine, null);
+        } else {
+            time = advanceToEnd(engine, p, output, sinks);
+        }
+        if (summary != null) {
+            createParent(summary);
+            ObservationSummary.write(summary, runObservers);
+        }
+        return time;
+    }
+
+    private double advanceToEnd(SimulationEngine engine, Parameters p, Path output, FrameSink.Factory sinks) throws IOException {
+        createParent(output);
+        try {
+            writers.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a writer permit");
+        }
+        try (FrameSink writer = sinks.open(output, p)) {
+            return advanceToEnd(engine, writer);
+        } finally {
+            writers.release();
+        }
+    }
+
+    private static void createParent(Path path) throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+    }
+
+    private static double advanceToEnd(SimulationEngine engine, FrameSink writer) throws IOException {
+        TickProfiler profiler = engine.options().profiler();
+        while (!engine.isFinished()) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Run cancelled");
+            }
+            long tick = engine.nextTick();
+            double time = engine.nextTime();
+            engine.step(tick, time);
+            if (writer != null && writer.isDue(tick, time)) {
+                writer.writeFrame(engine.snapshot());
+            }
+            if (profiler != null) {
+                profiler.lap(Phase.OUTPUT);
+            }
+        }
+        if (profiler != null) {
+            profiler.flush();
+        }
+        return engine.nextTime();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+}
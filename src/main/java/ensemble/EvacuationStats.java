@@ -0,0 +1,46 @@
+package ensemble;
+
+/**
+ * Streaming min / mean / standard error of the evacuation times of one sweep point, or of
+ * any other per-run value ({@link Calibration} uses it for its objective).
+ * Uses Welford's update, so no individual run is kept. Not thread-safe.
+ */
+public final class EvacuationStats {
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double mean;
+    private double m2;
+
+    public void add(double time) {
+        count++;
+        min = Math.min(min, time);
+        double delta = time - mean;
+        mean += delta / count;
+        m2 += delta * (time - mean);
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double min() {
+        return min;
+    }
+
+    public double mean() {
+        return mean;
+    }
+
+    // Standard error of the mean, from the sample variance (NaN below two runs).
+    public double sem() {
+        if (count < 2) {
+            return Double.NaN;
+        }
+        return Math.sqrt(m2 / (count - 1) / count);
+    }
+
+    @Override
+    public String toString() {
+        return STR."n=\{count}, min=\{min}, mean=\{mean}, sem=\{sem()}";
+    }
+}
@@ -0,0 +1,110 @@
+package ensemble;
+
+import model.Parameters;
+import observe.Observer;
+import observe.WindowedSpeed;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-run observable a {@link Calibration} matches to a target value.
+ * <p>
+ * A run only lasts until its value is known: {@link #horizon()} ends it early when the
+ * observable only depends on the first seconds, e.g. a mean over [t1, t2].
+ */
+public interface Objective {
+
+    // Summary entries every calibration run adds next to its observers'.
+    String RUN_TIME = "run.time";
+    String RUN_FINISHED = "run.finished";
+
+    /**
+     * Fresh observers for one run.
+     */
+    List<Observer> observers(Parameters p);
+
+    /**
+     * Simulation time after which the value no longer changes; infinite if only the end of the run settles it.
+     */
+    double horizon();
+
+    /**
+     * Whether a run summary holds this objective's value, e.g. one found in a {@link ResultCache}.
+     */
+    boolean isIn(Map<String, Double> summary);
+
+    /**
+     * The value of one run from a summary it {@link #isIn}; NaN if the run has none.
+     */
+    double value(Map<String, Double> summary);
+
+    /**
+     * Time until every pedestrian left the corridor, as {@link EnsembleRunner} reports it.
+     * A run stopped by {@link Calibration#maxTime(double)} counts with the time it was stopped at.
+     */
+    static Objective evacuationTime() {
+        return new Objective() {
+            @Override
+            public List<Observer> observers(Parameters p) {
+                return List.of();
+            }
+
+            @Override
+            public double horizon() {
+                return Double.POSITIVE_INFINITY;
+            }
+
+            @Override
+            public boolean isIn(Map<String, Double> summary) {
+                return summary.containsKey(RUN_TIME);
+            }
+
+            @Override
+            public double value(Map<String, Double> summary) {
+                return summary.get(RUN_TIME);
+            }
+
+            @Override
+            public String toString() {
+                return "evacuation time";
+            }
+        };
+    }
+
+    /**
+     * Mean |vx| over a 1 s window, averaged between t1 and t2, as in study_ap_qin8.py.
+     * NaN, and left out of the statistics, for a run that emptied before t1.
+     */
+    static Objective meanAbsVx(double t1, double t2) {
+        return new Objective() {
+            @Override
+            public List<Observer> observers(Parameters p) {
+                return List.of(new WindowedSpeed(1.0, p.dt(), t1, t2));
+            }
+
+            @Override
+            public double horizon() {
+                return t2;
+            }
+
+            @Override
+            public boolean isIn(Map<String, Double> summary) {
+                // Only a mean over the same interval will do.
+                return summary.containsKey("vx.abs.mean")
+                        && Double.valueOf(t1).equals(summary.get("vx.abs.t1"))
+                        && Double.valueOf(t2).equals(summary.get("vx.abs.t2"));
+            }
+
+            @Override
+            public double value(Map<String, Double> summary) {
+                return summary.get("vx.abs.mean");
+            }
+
+            @Override
+            public String toString() {
+                return STR."mean |vx| over [\{t1}, \{t2}] s";
+            }
+        };
+    }
+}
@@ -0,0 +1,82 @@
+package ensemble;
+
+import model.Parameters;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Cartesian product of parameter values on top of a base {@link Parameters.Builder}.
+ * Axes vary in declaration order, the last one fastest.
+ */
+public final class ParameterSweep {
+    private final Supplier<Parameters.Builder> base;
+    private final List<Axis> axes = new ArrayList<>();
+
+    private ParameterSweep(Supplier<Parameters.Builder> base) {
+        this.base = base;
+    }
+
+    public static ParameterSweep from(Supplier<Parameters.Builder> base) {
+        return new ParameterSweep(base);
+    }
+
+    public ParameterSweep vary(String name, BiConsumer<Parameters.Builder, Double> setter, double... values) {
+        if (values.length == 0) {
+            throw new IllegalArgumentException("No values for " + name);
+        }
+        axes.add(new Axis(name, setter, values.clone()));
+        return this;
+    }
+
+    public ParameterSweep inflow(double... values) {
+        return vary("qIn", Parameters.Builder::inflow, values);
+    }
+
+    public ParameterSweep Ap(double... values) {
+        return vary("A_p", Parameters.Builder::Ap, values);
+    }
+
+    public ParameterSweep Bp(double... values) {
+        return vary("B_p", Parameters.Builder::Bp, values);
+    }
+
+    public ParameterSweep beta(double... values) {
+        return vary("beta", Parameters.Builder::beta, values);
+    }
+
+    public ParameterSweep tau(double... values) {
+        return vary("tau", Parameters.Builder::tau, values);
+    }
+
+    public List<SweepPoint> points() {
+        List<SweepPoint> points = new ArrayList<>();
+        int[] idx = new int[axes.size()];
+        while (true) {
+            Parameters.Builder b = base.get();
+            Map<String, Double> values = new LinkedHashMap<>();
+            for (int a = 0; a < axes.size(); a++) {
+                Axis axis = axes.get(a);
+                double v = axis.values()[idx[a]];
+                axis.setter().accept(b, v);
+                values.put(axis.name(), v);
+            }
+            points.add(new SweepPoint(points.size(), Collections.unmodifiableMap(values), b.build()));
+
+            int a = axes.size() - 1;
+            while (a >= 0 && ++idx[a] == axes.get(a).values().length) {
+                idx[a--] = 0;
+            }
+            if (a < 0) {
+                return points;
+            }
+        }
+    }
+
+    private record Axis(String name, BiConsumer<Parameters.Builder, Double> setter, double[] values) {}
+}
@@ -0,0 +1,165 @@
+package ensemble;
+
+import model.Layout;
+import model.Parameters;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Run summaries on disk, keyed by a hash of the parameters without their seed, and the seed.
+ * <p>
+ * Each parameter hash has its own file in the cache directory, {@code <hash>.csv}, with one
+ * line per run: the seed, then {@code name=value} pairs, then {@code end}. A line without
+ * that last field was cut short and is ignored. Runs are only ever appended; when a seed
+ * appears twice, the later line wins. {@link #inMemory()} keeps the runs of one JVM
+ * only, without files. Not thread-safe.
+ */
+public final class ResultCache {
+    // Last field of every complete line.
+    private static final String END = "end";
+    private final Path dir;
+    // Parameter hashes whose file was read, and the runs found in it by seed.
+    private final Map<String, Map<Long, Map<String, Double>>> loaded = new HashMap<>();
+
+    private ResultCache(Path dir) {
+        this.dir = dir;
+    }
+
+    public static ResultCache in(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        return new ResultCache(dir);
+    }
+
+    public static ResultCache inMemory() {
+        return new ResultCache(null);
+    }
+
+    /**
+     * Stable hash of every parameter but the seed, the same in every JVM: hex digits of
+     * the SHA-256 of the values' bits.
+     */
+    public static String key(Parameters p) {
+        Layout layout = p.layout();
+        ByteBuffer buf = ByteBuffer.allocate(15 * Double.BYTES + 5 * Integer.BYTES
+                        + layout.walls().size() * 4 * Double.BYTES + layout.doors().size() * (Integer.BYTES + 2 * Double.BYTES))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (double v : new double[]{p.vMax(), p.A_p(), p.B_p(), p.dt(), p.outputDt(), p.corridorLength(),
+                p.corridorWidth(), p.inflowPerSide(), p.rMin(), p.rMax(), p.A_w(), p.B_w(), p.tau(), p.beta(),
+                layout.resolution()}) {
+            buf.putDouble(v);
+        }
+        buf.putInt(p.spawnLimitPerSide())
+                .putInt(p.exitsPerSide())
+                .putInt(p.spawnAdmission() ? 1 : 0)
+                .putInt(layout.walls().size())
+                .putInt(layout.doors().size());
+        for (Layout.Wall w : layout.walls()) {
+            buf.putDouble(w.x1()).putDouble(w.y1()).putDouble(w.x2()).putDouble(w.y2());
+        }
+        for (Layout.Door d : layout.doors()) {
+            buf.putInt(d.end().ordinal()).putDouble(d.from()).putDouble(d.to());
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(buf.array());
+            return HexFormat.of().formatHex(digest, 0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The summary of the run of {@code p} with its seed, or {@code null} if there is none.
+     */
+    public Map<String, Double> get(Parameters p) throws IOException {
+        return runs(key(p)).get(p.seed());
+    }
+
+    public void put(Parameters p, Map<String, Double> summary) throws IOException {
+        String key = key(p);
+        Map<String, Double> copy = new LinkedHashMap<>(summary);
+        StringBuilder line = new StringBuilder().append(p.seed());
+        copy.forEach((name, value) -> line.append(',').append(name).append('=').append(value));
+        line.append(',').append(END);
+        if (dir != null) {
+            Path file = dir.resolve(key + ".csv");
+            boolean cutShort = endsCutShort(file);
+            try (BufferedWriter bw = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                if (cutShort) {
+                    // Keep the new line off the end of a cut one, which would otherwise look complete.
+                    bw.newLine();
+                }
+                bw.write(line.toString());
+                bw.newLine();
+            }
+        }
+        runs(key).put(p.seed(), copy);
+    }
+
+    private Map<Long, Map<String, Double>> runs(String key) throws IOException {
+        Map<Long, Map<String, Double>> runs = loaded.get(key);
+        if (runs != null) {
+            return runs;
+        }
+        runs = new HashMap<>();
+        Path file = dir == null ? null : dir.resolve(key + ".csv");
+        if (file != null && Files.exists(file)) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                parse(line, runs);
+            }
+        }
+        loaded.put(key, runs);
+        return runs;
+    }
+
+    // Whether the file ends inside a line, as left by a run killed while appending it.
+    private static boolean endsCutShort(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return false;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, size - 1);
+            return last.get(0) != '\n';
+        }
+    }
+
+    // Skips a line cut short, e.g. by a run killed while appending it: it lacks the END field.
+    private static void parse(String line, Map<Long, Map<String, Double>> runs) {
+        String[] fields = line.split(",");
+        if (fields.length < 2 || !fields[fields.length - 1].equals(END)) {
+            return;
+        }
+        Map<String, Double> summary = new LinkedHashMap<>();
+        try {
+            for (int k = 1; k < fields.length - 1; k++) {
+                int eq = fields[k].indexOf('=');
+                if (eq < 0) {
+                    return;
+                }
+                summary.put(fields[k].substring(0, eq), Double.parseDouble(fields[k].substring(eq + 1)));
+            }
+            runs.put(Long.parseLong(fields[0]), summary);
+        } catch (NumberFormatException e) {
+            // Cut short inside a number.
+        }
+    }
+}
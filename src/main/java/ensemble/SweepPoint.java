@@ -0,0 +1,25 @@
+package ensemble;
+
+import model.Parameters;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * One combination of swept values together with the parameters it produces.
+ *
+ * @param index  position of the point in the sweep
+ * @param values swept parameter names mapped to their values, in sweep order
+ */
+public record SweepPoint(int index, Map<String, Double> values, Parameters parameters) {
+
+    public double value(String name) {
+        return values.get(name);
+    }
+
+    public String label() {
+        return values.entrySet().stream()
+                .map(e -> e.getKey() + "=" + e.getValue())
+                .collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,203 @@
+package io;
+
+import model.SimulationState;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands frames to a bounded ring buffer that a dedicated thread drains into another
+ * {@link FrameSink}, so formatting and disk I/O overlap with the simulation.
+ * <p>
+ * The writer thread takes every queued frame in one go and writes the batch outside the
+ * lock. What happens when the ring is full is up to the {@link OverflowPolicy}.
+ * {@link #close()} waits until every accepted frame is written, then closes the delegate.
+ * A write failure is rethrown to the simulation thread by the next call.
+ */
+public final class AsyncFrameSink implements FrameSink {
+
+    public enum OverflowPolicy {
+        // Wait for the writer: no frame is lost, the simulation slows down to disk speed.
+        BLOCK,
+        // Discard the incoming frame.
+        DROP,
+        // Replace the newest queued frame by the incoming one.
+        COALESCE
+    }
+
+    private final FrameSink delegate;
+    private final OverflowPolicy policy;
+    private final SimulationState[] ring;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Thread writer;
+    private int head = 0;
+    private int size = 0;
+    private boolean closed = false;
+    private IOException failure;
+    private long dropped = 0;
+    private long coalesced = 0;
+
+    public AsyncFrameSink(FrameSink delegate, int capacity, OverflowPolicy policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.delegate = delegate;
+        this.policy = policy;
+        this.ring = new SimulationState[capacity];
+        this.writer = new Thread(this::drain, "frame-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Wraps every sink opened by 'inner'.
+    public static Factory factory(Factory inner, int capacity, OverflowPolicy policy) {
+        return (path, p) -> new AsyncFrameSink(inner.open(path, p), capacity, policy);
+    }
+
+    @Override
+    public boolean isDue(long tick, double time) {
+        return delegate.isDue(tick, time);
+    }
+
+    @Override
+    public void writeFrame(SimulationState s) throws IOException {
+        lock.lock();
+        try {
+            rethrowFailure();
+            if (closed) {
+                throw new IOException("Frame sink is closed");
+            }
+            if (size == ring.length) {
+                switch (policy) {
+                    case DROP -> {
+                        dropped++;
+                        return;
+                    }
+                    case COALESCE -> {
+                        ring[(head + size - 1) % ring.length] = s;
+                        coalesced++;
+                        return;
+                    }
+                    case BLOCK -> {
+                        while (size == ring.length && failure == null) {
+                            notFull.await();
+                        }
+                        rethrowFailure();
+                    }
+                }
+            }
+            ring[(head + size) % ring.length] = s;
+            size++;
+            notEmpty.signal();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for the frame writer");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Frames discarded by the DROP policy so far.
+    public long dropped() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Frames overwritten by the COALESCE policy so far.
+    public long coalesced() {
+        lock.lock();
+        try {
+            return coalesced;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            delegate.close();
+        } finally {
+            lock.lock();
+            try {
+                rethrowFailure();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void drain() {
+        SimulationState[] batch = new SimulationState[ring.length];
+        while (true) {
+            int n;
+            lock.lock();
+            try {
+                while (size == 0 && !closed) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (size == 0) {
+                    return;
+                }
+                for (n = 0; n < size; n++) {
+                    int at = (head + n) % ring.length;
+                    batch[n] = ring[at];
+                    ring[at] = null;
+                }
+                head = (head + n) % ring.length;
+                size = 0;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                for (int k = 0; k < n; k++) {
+                    delegate.writeFrame(batch[k]);
+                    batch[k] = null;
+                }
+            } catch (IOException | RuntimeException e) {
+                lock.lock();
+                try {
+                    failure = e instanceof IOException io ? io : new IOException(e);
+                    notFull.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+        }
+    }
+
+    private void rethrowFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Frame writer failed", failure);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package io;
+
+import model.Particle;
+import model.SimulationState;
+import model.Vector2D;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Random-access reader of files written by {@link BinaryFrameWriter}.
+ */
+public final class BinaryFrameReader implements Closeable {
+    private final FileChannel channel;
+    private final BinaryFrameWriter.Precision precision;
+    private final boolean compressed;
+    private final double dt;
+    private final long[] ticks;
+    private final double[] times;
+    private final long[] offsets;
+    private final int[] counts;
+    private final int[] storedBytes;
+    private final int[] spawnedLeft;
+    private final int[] spawnedRight;
+    private ByteBuffer stored = ByteBuffer.allocateDirect(1 << 16);
+    private ByteBuffer block = ByteBuffer.allocateDirect(1 << 16);
+
+    public BinaryFrameReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = read(ByteBuffer.allocate(BinaryFrameWriter.HEADER_BYTES), 0);
+            byte[] magic = new byte[BinaryFrameWriter.MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, BinaryFrameWriter.MAGIC)) {
+                throw new IOException(path + " is not a binary frame file");
+            }
+            int version = header.getInt();
+            if (version != BinaryFrameWriter.VERSION) {
+                throw new IOException("Unsupported binary frame format version " + version);
+            }
+            this.precision = BinaryFrameWriter.Precision.ofBytes(header.getInt());
+            this.compressed = (header.getInt() & BinaryFrameWriter.FLAG_DEFLATE) != 0;
+            header.getInt();
+            this.dt = header.getDouble();
+            int frames = Math.toIntExact(header.getLong());
+            long indexOffset = header.getLong();
+
+            ByteBuffer index = read(ByteBuffer.allocate(frames * BinaryFrameWriter.INDEX_ENTRY_BYTES), indexOffset);
+            ticks = new long[frames];
+            times = new double[frames];
+            offsets = new long[frames];
+            counts = new int[frames];
+            storedBytes = new int[frames];
+            spawnedLeft = new int[frames];
+            spawnedRight = new int[frames];
+            for (int k = 0; k < frames; k++) {
+                ticks[k] = index.getLong();
+                times[k] = index.getDouble();
+                offsets[k] = index.getLong();
+                counts[k] = index.getInt();
+                storedBytes[k] = index.getInt();
+                spawnedLeft[k] = index.getInt();
+                spawnedRight[k] = index.getInt();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int frameCount() {
+        return ticks.length;
+    }
+
+    public double dt() {
+        return dt;
+    }
+
+    public long tick(int frame) {
+        return ticks[frame];
+    }
+
+    public double time(int frame) {
+        return times[frame];
+    }
+
+    public int particleCount(int frame) {
+        return counts[frame];
+    }
+
+    public SimulationState readFrame(int frame) throws IOException {
+        int n = counts[frame];
+        int bytes = n * (2 * Integer.BYTES + 5 * precision.bytes);
+        if (block.capacity() < bytes) {
+            block = ByteBuffer.allocateDirect(Math.max(bytes, block.capacity() * 2));
+        }
+        block.clear().limit(bytes);
+        if (compressed) {
+            if (stored.capacity() < storedBytes[frame]) {
+                stored = ByteBuffer.allocateDirect(Math.max(storedBytes[frame], stored.capacity() * 2));
+            }
+            stored.clear().limit(storedBytes[frame]);
+            read(stored, offsets[frame]);
+            inflate(stored, block);
+        } else {
+            read(block, offsets[frame]);
+        }
+        block.order(ByteOrder.LITTLE_ENDIAN);
+
+        int valueBase = n * 2 * Integer.BYTES;
+        List<Particle> particles = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int id = block.getInt(i * Integer.BYTES);
+            int goalSign = block.getInt((n + i) * Integer.BYTES);
+            double x = value(valueBase, n, 0, i);
+            double y = value(valueBase, n, 1, i);
+            double vx = value(valueBase, n, 2, i);
+            double vy = value(valueBase, n, 3, i);
+            double r = value(valueBase, n, 4, i);
+            // 'begin' is not stored; it follows from the walking direction.
+            particles.add(new Particle(id, Vector2D.of(x, y), Vector2D.of(vx, vy), r, goalSign, goalSign > 0 ? 0 : 16));
+        }
+        return new SimulationState(ticks[frame], times[frame], particles, spawnedLeft[frame], spawnedRight[frame]);
+    }
+
+    private double value(int base, int n, int column, int i) {
+        int at = base + (column * n + i) * precision.bytes;
+        return precision == BinaryFrameWriter.Precision.FLOAT32 ? block.getFloat(at) : block.getDouble(at);
+    }
+
+    private static void inflate(ByteBuffer src, ByteBuffer dst) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(src);
+            while (dst.hasRemaining() && !inflater.finished()) {
+                if (inflater.inflate(dst) == 0 && inflater.needsInput()) {
+                    throw new IOException("Truncated compressed frame");
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed frame", e);
+        } finally {
+            inflater.end();
+        }
+        dst.flip();
+    }
+
+    private ByteBuffer read(ByteBuffer buf, long at) throws IOException {
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        while (buf.hasRemaining()) {
+            int r = channel.read(buf, at);
+            if (r < 0) {
+                throw new IOException("Unexpected end of binary frame file");
+            }
+            at += r;
+        }
+        return buf.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,216 @@
+package io;
+
+import model.Particle;
+import model.SimulationState;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Writes selected frames of the simulation to a little-endian columnar binary file,
+ * laid out so that {@code visualization/binary_frames.py} can {@code np.memmap} it.
+ * <pre>
+ * header, 64 bytes
+ *    0  char[8]  magic "PEDFRAME"
+ *    8  int32    format version (1)
+ *   12  int32    bytes per value: 4 (float32) or 8 (float64)
+ *   16  int32    flags, bit 0: frame blocks are deflate-compressed
+ *   20  int32    reserved
+ *   24  float64  dt (the base step; frame times are in the index)
+ *   32  int64    frame count
+ *   40  int64    offset of the frame index
+ *   48           reserved up to byte 64
+ * frame block of n particles, 8-byte aligned
+ *   int32[n] id, int32[n] goalSign, then value[n] for each of x, y, vx, vy, radius
+ *   (the whole block deflated when bit 0 of flags is set)
+ * frame index, 40 bytes per frame
+ *   int64 tick, float64 time, int64 block offset, int32 n, int32 stored block bytes,
+ *   int32 spawned left, int32 spawned right
+ * </pre>
+ * Frame count and index offset are written by {@link #close()}; until then they are zero.
+ */
+public final class BinaryFrameWriter implements FrameSink {
+    static final byte[] MAGIC = "PEDFRAME".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    static final int INDEX_ENTRY_BYTES = 40;
+    static final int FLAG_DEFLATE = 1;
+
+    public enum Precision {
+        FLOAT32(4), FLOAT64(8);
+
+        final int bytes;
+
+        Precision(int bytes) {
+            this.bytes = bytes;
+        }
+
+        static Precision ofBytes(int bytes) {
+            for (Precision p : values()) {
+                if (p.bytes == bytes) {
+                    return p;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported value width: " + bytes);
+        }
+    }
+
+    private final FileChannel channel;
+    private final Precision precision;
+    private final Deflater deflater;
+    private final double dt;
+    private final OutputSchedule schedule;
+    private ByteBuffer block = allocate(1 << 16);
+    private ByteBuffer packed;
+    private ByteBuffer index = ByteBuffer.allocate(INDEX_ENTRY_BYTES * 256).order(ByteOrder.LITTLE_ENDIAN);
+    private long frames = 0;
+    private long position = HEADER_BYTES;
+
+    public BinaryFrameWriter(Path path, double dt, double outputDt, Precision precision) throws IOException {
+        this(path, dt, outputDt, precision, false);
+    }
+
+    /**
+     * @param compressed deflate every frame block; the file can then no longer be memory-mapped
+     */
+    public BinaryFrameWriter(Path path, double dt, double outputDt, Precision precision, boolean compressed) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.precision = precision;
+        this.deflater = compressed ? new Deflater(Deflater.BEST_SPEED) : null;
+        this.packed = compressed ? allocate(1 << 16) : null;
+        this.dt = dt;
+        this.schedule = new OutputSchedule(dt, outputDt);
+        writeHeader();
+    }
+
+    // Sink factories for EnsembleRunner and friends.
+    public static Factory factory(Precision precision, boolean compressed) {
+        return (path, p) -> new BinaryFrameWriter(path, p.dt(), p.outputDt(), precision, compressed);
+    }
+
+    @Override
+    public boolean isDue(long tick, double time) {
+        return schedule.isDue(time);
+    }
+
+    @Override
+    public void writeFrame(SimulationState s) throws IOException {
+        List<Particle> particles = s.particles();
+        int n = particles.size();
+        int bytes = n * (2 * Integer.BYTES + 5 * precision.bytes);
+        if (block.capacity() < bytes) {
+            block = allocate(Math.max(bytes, block.capacity() * 2));
+        }
+        block.clear();
+        for (Particle p : particles) {
+            block.putInt(p.id());
+        }
+        for (Particle p : particles) {
+            block.putInt(p.goalSign());
+        }
+        for (int column = 0; column < 5; column++) {
+            for (Particle p : particles) {
+                double v = switch (column) {
+                    case 0 -> p.pos().x();
+                    case 1 -> p.pos().y();
+                    case 2 -> p.vel().x();
+                    case 3 -> p.vel().y();
+                    default -> p.radius();
+                };
+                if (precision == Precision.FLOAT32) {
+                    block.putFloat((float) v);
+                } else {
+                    block.putDouble(v);
+                }
+            }
+        }
+        block.flip();
+
+        ByteBuffer out = deflater == null ? block : deflate(block);
+        int stored = out.remaining();
+        writeFully(out, position);
+
+        if (index.remaining() < INDEX_ENTRY_BYTES) {
+            ByteBuffer bigger = ByteBuffer.allocate(index.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN);
+            bigger.put(index.flip());
+            index = bigger;
+        }
+        index.putLong(s.tick())
+                .putDouble(s.time())
+                .putLong(position)
+                .putInt(n)
+                .putInt(stored)
+                .putInt(s.pedestriansSpawnedLeft())
+                .putInt(s.pedestriansSpawnedRight());
+        frames++;
+        position = align8(position + stored);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            long indexOffset = position;
+            writeFully(index.flip(), indexOffset);
+            ByteBuffer tail = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            tail.putLong(frames).putLong(indexOffset).flip();
+            writeFully(tail, 32);
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+            channel.close();
+        }
+    }
+
+    private ByteBuffer deflate(ByteBuffer src) {
+        deflater.reset();
+        deflater.setInput(src);
+        deflater.finish();
+        packed.clear();
+        while (!deflater.finished()) {
+            if (!packed.hasRemaining()) {
+                ByteBuffer bigger = allocate(packed.capacity() * 2);
+                bigger.put(packed.flip());
+                packed = bigger;
+            }
+            deflater.deflate(packed);
+        }
+        return packed.flip();
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC)
+                .putInt(VERSION)
+                .putInt(precision.bytes)
+                .putInt(deflater == null ? 0 : FLAG_DEFLATE)
+                .putInt(0)
+                .putDouble(dt)
+                .putLong(0)
+                .putLong(0);
+        header.clear();
+        writeFully(header, 0);
+    }
+
+    private void writeFully(ByteBuffer buf, long at) throws IOException {
+        while (buf.hasRemaining()) {
+            at += channel.write(buf, at);
+        }
+    }
+
+    private static long align8(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,318 @@
+package io;
+
+import model.Particle;
+import model.SimulationState;
+import model.Vector2D;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Random-access reader of files written by {@link CsvFrameWriter}, memory-mapped.
+ * <p>
+ * Opening the file scans it once, only far enough into each row to read its time and id,
+ * and builds two indices: where each frame starts, and for every id where each of its rows
+ * sits (frame and offset within the frame). Frames and trajectories are then parsed
+ * straight from the mapping, touching nothing else of the file. The indices take 8 bytes
+ * per row, about a tenth of the file.
+ * <p>
+ * CSV files keep neither ticks nor spawn counts: frames come back with tick -1 and zero
+ * spawns. A frame without pedestrians leaves no rows, so it is not in the file either.
+ * Not thread-safe.
+ */
+public final class CsvFrameReader implements Closeable {
+    private static final String HEADER = "time,id,x,y,vx,vy,radius,goalSign";
+    // Files are mapped in chunks of 1 GiB, the most a single buffer can hold being 2 GiB.
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+    // Frame k: time times[k], rows frameRows[k] .. frameRows[k + 1] at bytes frameOffsets[k] .. frameOffsets[k + 1].
+    private final double[] times;
+    private final long[] frameOffsets;
+    private final int[] frameRows;
+    // Rows of id i, in time order: rowFrame / rowOffset[idStart[i] .. idStart[i + 1]), offsets relative to the frame.
+    private final int[] idStart, rowFrame, rowOffset;
+    private final byte[] field = new byte[64];
+    private final double[] row = new double[8];
+
+    public CsvFrameReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            this.size = channel.size();
+            this.chunks = new MappedByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT)];
+            for (int k = 0; k < chunks.length; k++) {
+                long from = (long) k << CHUNK_SHIFT;
+                chunks[k] = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(1L << CHUNK_SHIFT, size - from));
+            }
+
+            long pos = 0;
+            if (size > 0) {
+                long end = lineEnd(0);
+                if (!HEADER.equals(text(0, end))) {
+                    throw new IOException(path + " is not a frame CSV");
+                }
+                pos = nextLine(end);
+            }
+
+            // One pass: frame starts, and the id and frame offset of every row.
+            double[] frameTimes = new double[256];
+            long[] offsets = new long[257];
+            int[] rowsBefore = new int[257];
+            int[] ids = new int[1024], inFrame = new int[1024];
+            int frames = 0, rows = 0, maxId = -1;
+            long timeStart = -1, timeEnd = -1;
+            while (pos < size) {
+                long end = lineEnd(pos);
+                if (end == pos) {
+                    pos = nextLine(end);
+                    continue;
+                }
+                long comma = indexOf(',', pos, end);
+                if (frames == 0 || !sameBytes(timeStart, timeEnd, pos, comma)) {
+                    if (frames == frameTimes.length) {
+                        frameTimes = Arrays.copyOf(frameTimes, 2 * frames);
+                        offsets = Arrays.copyOf(offsets, 2 * frames + 1);
+                        rowsBefore = Arrays.copyOf(rowsBefore, 2 * frames + 1);
+                    }
+                    frameTimes[frames] = Double.parseDouble(text(pos, comma));
+                    offsets[frames] = pos;
+                    rowsBefore[frames] = rows;
+                    frames++;
+                    timeStart = pos;
+                    timeEnd = comma;
+                }
+                if (rows == ids.length) {
+                    ids = Arrays.copyOf(ids, 2 * rows);
+                    inFrame = Arrays.copyOf(inFrame, 2 * rows);
+                }
+                int id = parseId(comma + 1, end);
+                ids[rows] = id;
+                inFrame[rows] = Math.toIntExact(pos - offsets[frames - 1]);
+                maxId = Math.max(maxId, id);
+                rows++;
+                pos = nextLine(end);
+            }
+            offsets[frames] = size;
+            rowsBefore[frames] = rows;
+            this.times = Arrays.copyOf(frameTimes, frames);
+            this.frameOffsets = Arrays.copyOf(offsets, frames + 1);
+            this.frameRows = Arrays.copyOf(rowsBefore, frames + 1);
+
+            // Rows grouped by id; a stable fill keeps each id's rows in frame order.
+            this.idStart = new int[maxId + 2];
+            for (int r = 0; r < rows; r++) {
+                idStart[ids[r] + 1]++;
+            }
+            for (int i = 0; i <= maxId; i++) {
+                idStart[i + 1] += idStart[i];
+            }
+            this.rowFrame = new int[rows];
+            this.rowOffset = new int[rows];
+            int[] fill = Arrays.copyOf(idStart, maxId + 1);
+            for (int f = 0; f < frames; f++) {
+                for (int r = frameRows[f]; r < frameRows[f + 1]; r++) {
+                    int at = fill[ids[r]]++;
+                    rowFrame[at] = f;
+                    rowOffset[at] = inFrame[r];
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int frameCount() {
+        return times.length;
+    }
+
+    public double time(int frame) {
+        return times[frame];
+    }
+
+    public int particleCount(int frame) {
+        return frameRows[frame + 1] - frameRows[frame];
+    }
+
+    // One more than the largest id in the file.
+    public int idCount() {
+        return idStart.length - 1;
+    }
+
+    /**
+     * The first frame at or after {@code time}, {@link #frameCount()} if there is none.
+     */
+    public int frameAt(double time) {
+        int k = Arrays.binarySearch(times, time);
+        if (k < 0) {
+            return -k - 1;
+        }
+        while (k > 0 && times[k - 1] == time) {
+            k--;
+        }
+        return k;
+    }
+
+    public SimulationState readFrame(int frame) {
+        int n = particleCount(frame);
+        List<Particle> particles = new ArrayList<>(n);
+        long pos = frameOffsets[frame];
+        for (int k = 0; k < n; k++) {
+            pos = parseRow(pos);
+            particles.add(particle());
+        }
+        return new SimulationState(-1, times[frame], particles, 0, 0);
+    }
+
+    /**
+     * Frames from {@code from} to {@code to} seconds, both included, parsed one at a time as
+     * the iteration reaches them.
+     */
+    public Iterable<SimulationState> frames(double from, double to) {
+        int first = frameAt(from);
+        return () -> new Iterator<>() {
+            private int next = first;
+
+            @Override
+            public boolean hasNext() {
+                return next < times.length && times[next] <= to;
+            }
+
+            @Override
+            public SimulationState next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return readFrame(next++);
+            }
+        };
+    }
+
+    public Iterable<SimulationState> frames() {
+        return frames(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+    }
+
+    public Trajectory trajectory(int id) {
+        return trajectory(id, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * The rows of {@code id} from {@code from} to {@code to} seconds, both included; empty
+     * columns and goalSign 0 if the id has none there.
+     */
+    public Trajectory trajectory(int id, double from, double to) {
+        if (id < 0 || id >= idCount()) {
+            return new Trajectory(id, 0, new double[0], new double[0], new double[0], new double[0], new double[0],
+                    new double[0]);
+        }
+        int first = idStart[id], end = idStart[id + 1];
+        int fromFrame = frameAt(from);
+        while (first < end && rowFrame[first] < fromFrame) {
+            first++;
+        }
+        int last = first;
+        while (last < end && times[rowFrame[last]] <= to) {
+            last++;
+        }
+        int n = last - first;
+        double[][] columns = new double[6][n];
+        int goalSign = 0;
+        for (int k = 0; k < n; k++) {
+            int f = rowFrame[first + k];
+            parseRow(frameOffsets[f] + rowOffset[first + k]);
+            columns[0][k] = row[0];
+            for (int c = 1; c < 6; c++) {
+                columns[c][k] = row[c + 1];
+            }
+            goalSign = (int) row[7];
+        }
+        return new Trajectory(id, goalSign, columns[0], columns[1], columns[2], columns[3], columns[4], columns[5]);
+    }
+
+    private Particle particle() {
+        int goalSign = (int) row[7];
+        // 'begin' is not stored; it follows from the walking direction.
+        return new Particle((int) row[1], Vector2D.of(row[2], row[3]), Vector2D.of(row[4], row[5]), row[6], goalSign,
+                goalSign > 0 ? 0 : 16);
+    }
+
+    // Parses the row at pos into row[0..8) and returns where the next one starts.
+    private long parseRow(long pos) {
+        long end = lineEnd(pos);
+        for (int c = 0; c < row.length; c++) {
+            long stop = c == row.length - 1 ? end : indexOf(',', pos, end);
+            row[c] = Double.parseDouble(text(pos, stop));
+            pos = stop + 1;
+        }
+        return nextLine(end);
+    }
+
+    private int parseId(long pos, long end) {
+        int id = 0;
+        for (byte b; pos < end && (b = byteAt(pos)) != ','; pos++) {
+            id = 10 * id + (b - '0');
+        }
+        return id;
+    }
+
+    private boolean sameBytes(long from1, long to1, long from2, long to2) {
+        if (to1 - from1 != to2 - from2) {
+            return false;
+        }
+        for (long k = 0; k < to1 - from1; k++) {
+            if (byteAt(from1 + k) != byteAt(from2 + k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String text(long from, long to) {
+        int n = (int) (to - from);
+        byte[] bytes = n <= field.length ? field : new byte[n];
+        for (int k = 0; k < n; k++) {
+            bytes[k] = byteAt(from + k);
+        }
+        return new String(bytes, 0, n, StandardCharsets.ISO_8859_1);
+    }
+
+    private long indexOf(char c, long from, long end) {
+        while (from < end && byteAt(from) != c) {
+            from++;
+        }
+        return from;
+    }
+
+    // End of the line at pos, before its '\n' or "\r\n".
+    private long lineEnd(long pos) {
+        long end = indexOf('\n', pos, size);
+        return end > pos && byteAt(end - 1) == '\r' ? end - 1 : end;
+    }
+
+    private long nextLine(long lineEnd) {
+        long next = indexOf('\n', lineEnd, size);
+        return Math.min(next + 1, size);
+    }
+
+    private byte byteAt(long pos) {
+        return chunks[(int) (pos >>> CHUNK_SHIFT)].get((int) (pos & CHUNK_MASK));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -5,39 +5,43 @@ import model.SimulationState;
 import model.Vector2D;
 
 import java.io.BufferedWriter;
-import java.io.Closeable;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 
 /**
  * Writes selected frames of the simulation to a CSV file.
  */
-public final class CsvFrameWriter implements Closeable {
+public final class CsvFrameWriter implements FrameSink {
     private final BufferedWriter bw;
-    private final long dt2;
-    private final double dt;
+    private final OutputSchedule schedule;
     private boolean skipHeader = false;
 
     public CsvFrameWriter(String path, double dt, double outputDt) throws IOException {
-        this.bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8));
-        this.dt = dt;
-        this.dt2 = Math.max(1, Math.round(outputDt / dt));
+        this(new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8), dt, outputDt);
     }
 
-    // Will write if
-    public void writeFrameIfDue(SimulationState s) throws IOException {
-        if (s.tick() % dt2 != 0) {
-            return;
-        }
+    // Writes into 'out', e.g. a network stream; a BufferedWriter is used as is, so its owner can flush it.
+    public CsvFrameWriter(Writer out, double dt, double outputDt) {
+        this.bw = out instanceof BufferedWriter b ? b : new BufferedWriter(out);
+        this.schedule = new OutputSchedule(dt, outputDt);
+    }
+
+    @Override
+    public boolean isDue(long tick, double time) {
+        return schedule.isDue(time);
+    }
 
+    @Override
+    public void writeFrame(SimulationState s) throws IOException {
         if (!skipHeader) {
             bw.write("time,id,x,y,vx,vy,radius,goalSign");
             bw.newLine();
             skipHeader = true;
         }
-        double timeSec = s.tick() * dt;
+        double timeSec = s.time();
         for (Particle particle : s.particles()) {
             Vector2D p = particle.pos(), v = particle.vel();
             bw.write(timeSec + "," + particle.id() + "," + p.x() + "," + p.y() + "," + v.x() + "," + v.y() + "," + particle.radius() + "," + particle.goalSign());
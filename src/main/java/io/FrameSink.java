@@ -0,0 +1,40 @@
+package io;
+
+import model.Parameters;
+import model.SimulationState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Destination of the frames of a run. Callers check {@link #isDue(long, double)} before
+ * building the {@link SimulationState}, so ticks that are not written cost nothing.
+ */
+public interface FrameSink extends Closeable {
+
+    /**
+     * Whether the step that ended at {@code tick} / {@code time} gets a frame. The cadence
+     * follows simulation time, not ticks, so it holds when the step size varies; ask once
+     * per step, in order.
+     */
+    boolean isDue(long tick, double time);
+
+    void writeFrame(SimulationState s) throws IOException;
+
+    default void writeFrameIfDue(SimulationState s) throws IOException {
+        if (isDue(s.tick(), s.time())) {
+            writeFrame(s);
+        }
+    }
+
+    /**
+     * Opens the sink of one run.
+     */
+    @FunctionalInterface
+    interface Factory {
+        FrameSink open(Path path, Parameters p) throws IOException;
+    }
+
+    Factory CSV = (path, p) -> new CsvFrameWriter(path.toString(), p.dt(), p.outputDt());
+}
@@ -0,0 +1,29 @@
+package io;
+
+/**
+ * Output cadence on simulation time: a frame is due at the first step at or after every
+ * multiple of {@code outputDt}, "at" allowing half a base step {@code dt} of rounding. With a
+ * fixed step that is every round(outputDt / dt)-th tick; with adaptive steps no multiple is
+ * skipped, a long step just serves the multiples it jumped over with one frame.
+ * <p>
+ * Remembers the last multiple it answered for, so ask exactly once per step, in time order.
+ */
+public final class OutputSchedule {
+    private final double dt;
+    private final double outputDt;
+    private long lastSlot = -1;
+
+    public OutputSchedule(double dt, double outputDt) {
+        this.dt = dt;
+        this.outputDt = outputDt;
+    }
+
+    public boolean isDue(double time) {
+        long slot = (long) Math.floor((time + dt / 2) / outputDt);
+        if (slot <= lastSlot) {
+            return false;
+        }
+        lastSlot = slot;
+        return true;
+    }
+}
@@ -0,0 +1,12 @@
+package io;
+
+/**
+ * The rows of one pedestrian in a frame file, in time order, as columns.
+ */
+public record Trajectory(int id, int goalSign, double[] time, double[] x, double[] y, double[] vx, double[] vy,
+                         double[] radius) {
+
+    public int size() {
+        return time.length;
+    }
+}
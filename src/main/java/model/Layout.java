@@ -0,0 +1,107 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What stands in the corridor besides its two side walls: wall segments (obstacles,
+ * bottlenecks, pillars) and doors. An end with doors is closed except for them; an end
+ * without any stays open over its whole width. Pedestrians enter and leave through the
+ * ends as before, aiming for the doors of the end they are walking to.
+ * <p>
+ * {@link #CORRIDOR}, the default, is the plain corridor of the model.
+ *
+ * @param resolution side of the cells the wall and navigation fields are sampled on, in m
+ */
+public record Layout(List<Wall> walls, List<Door> doors, double resolution) {
+    public static final double DEFAULT_RESOLUTION = 0.05;
+    public static final Layout CORRIDOR = new Layout(List.of(), List.of(), DEFAULT_RESOLUTION);
+
+    public Layout {
+        walls = List.copyOf(walls);
+        doors = List.copyOf(doors);
+        if (!(resolution > 0)) {
+            throw new IllegalArgumentException("resolution must be positive");
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // Nothing but the side walls, and both ends open.
+    public boolean isCorridor() {
+        return walls.isEmpty() && doors.isEmpty();
+    }
+
+    public enum End {
+        LEFT, RIGHT
+    }
+
+    public record Wall(double x1, double y1, double x2, double y2) {
+    }
+
+    // An opening in the end wall over [from, to] of the corridor width.
+    public record Door(End end, double from, double to) {
+        public Door {
+            if (!(from < to)) {
+                throw new IllegalArgumentException("A door must span from < to");
+            }
+        }
+    }
+
+    public static final class Builder {
+        private final List<Wall> walls = new ArrayList<>();
+        private final List<Door> doors = new ArrayList<>();
+        private double resolution = DEFAULT_RESOLUTION;
+
+        public Builder wall(double x1, double y1, double x2, double y2) {
+            walls.add(new Wall(x1, y1, x2, y2));
+            return this;
+        }
+
+        // Closed polygon through the points (x0, y0), (x1, y1), ...
+        public Builder polygon(double... xy) {
+            if (xy.length < 6 || xy.length % 2 != 0) {
+                throw new IllegalArgumentException("A polygon needs at least three x, y pairs");
+            }
+            for (int k = 0; k < xy.length; k += 2) {
+                int next = (k + 2) % xy.length;
+                wall(xy[k], xy[k + 1], xy[next], xy[next + 1]);
+            }
+            return this;
+        }
+
+        public Builder rectangle(double x1, double y1, double x2, double y2) {
+            return polygon(x1, y1, x2, y1, x2, y2, x1, y2);
+        }
+
+        // Round pillar, as a 16-sided polygon around the circle.
+        public Builder pillar(double cx, double cy, double radius) {
+            int sides = 16;
+            // Circumscribed, so the pillar is at least as large as asked.
+            double R = radius / Math.cos(Math.PI / sides);
+            double[] xy = new double[2 * sides];
+            for (int k = 0; k < sides; k++) {
+                double a = 2 * Math.PI * k / sides;
+                xy[2 * k] = cx + R * Math.cos(a);
+                xy[2 * k + 1] = cy + R * Math.sin(a);
+            }
+            return polygon(xy);
+        }
+
+        public Builder door(End end, double from, double to) {
+            doors.add(new Door(end, from, to));
+            return this;
+        }
+
+        public Builder resolution(double h) {
+            resolution = h;
+            return this;
+        }
+
+        public Layout build() {
+            return new Layout(walls, doors, resolution);
+        }
+    }
+}
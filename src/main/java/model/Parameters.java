@@ -1,18 +1,36 @@
 package model;
 
+import java.util.SplittableRandom;
+
+/**
+ * @param spawnLimitPerSide pedestrians spawned at each end over a whole run
+ * @param exitsPerSide      a run is finished once this many left through each end
+ * @param spawnAdmission    whether a spawn overlapping a pedestrian waits at the entrance
+ *                          instead of entering on top of it
+ * @param layout            obstacles and doors in the corridor, {@link Layout#CORRIDOR} for none
+ */
 public record Parameters(
         double vMax,
         double A_p, double B_p,
         double dt, double outputDt,
         double corridorLength, double corridorWidth,
         double inflowPerSide,
+        int spawnLimitPerSide, int exitsPerSide, boolean spawnAdmission,
         double rMin, double rMax,
-        double A_w, double B_w, double tau, double beta) {
+        double A_w, double B_w, double tau, double beta,
+        Layout layout,
+        long seed) {
 
     public static Builder builder() {
         return new Builder();
     }
 
+    // Same scenario, different random stream.
+    public Parameters withSeed(long newSeed) {
+        return new Parameters(vMax, A_p, B_p, dt, outputDt, corridorLength, corridorWidth, inflowPerSide,
+                spawnLimitPerSide, exitsPerSide, spawnAdmission, rMin, rMax, A_w, B_w, tau, beta, layout, newSeed);
+    }
+
     public static final class Builder {
         private double A_w = 1215;
         private double B_w = 0.025;
@@ -21,17 +39,27 @@ public record Parameters(
 
         private double L = 16, W = 3.6;
         private double inflow = 3.0;
+        private int spawnLimit = 100, exits = 100;
+        private boolean admission = false;
+        private Layout layout = Layout.CORRIDOR;
         private double rMin = 0.10, rMax = 0.35;
         private double dt = rMin/(2*v);
         private double outDt = 5*dt;
-        private final double tau = 0.5;
+        private double tau = 0.5;
         private double beta = 0.9;
+        // Random unless set, but always recorded so any run can be reproduced.
+        private long seed = new SplittableRandom().nextLong();
 
         public Builder beta(double beta) {
             this.beta = beta;
             return this;
         }
 
+        public Builder tau(double t) {
+            tau = t;
+            return this;
+        }
+
         public Builder desiredSpeed(double v0) {
             v = v0;
             return this;
@@ -68,6 +96,29 @@ public record Parameters(
             return this;
         }
 
+        // Spawns and exits per side; a run ends once every spawned pedestrian has left.
+        public Builder population(int perSide) {
+            spawnLimit = perSide;
+            exits = perSide;
+            return this;
+        }
+
+        // Exits per side that finish a run, e.g. fewer than spawned to skip the last stragglers.
+        public Builder exitsPerSide(int perSide) {
+            exits = perSide;
+            return this;
+        }
+
+        public Builder spawnAdmission(boolean admit) {
+            admission = admit;
+            return this;
+        }
+
+        public Builder layout(Layout l) {
+            layout = l;
+            return this;
+        }
+
         public Builder rMin(double r) {
             rMin = r;
             return this;
@@ -88,8 +139,14 @@ public record Parameters(
             return this;
         }
 
+        public Builder seed(long s) {
+            seed = s;
+            return this;
+        }
+
         public Parameters build() {
-            return new Parameters(v, A_p, B_p, dt, outDt, L, W, inflow, rMin, rMax, A_w, B_w, tau, beta);
+            return new Parameters(v, A_p, B_p, dt, outDt, L, W, inflow, spawnLimit, exits, admission,
+                    rMin, rMax, A_w, B_w, tau, beta, layout, seed);
         }
     }
 }
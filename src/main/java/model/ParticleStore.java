@@ -0,0 +1,255 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Structure-of-arrays particle storage that the engine mutates in place.
+ * <p>
+ * The kinematic state is double buffered: passes read the current buffers and
+ * write the next ones, which become current on {@link #commitRadius()} /
+ * {@link #commitMotion()}. {@link Particle} records are only built on demand
+ * by {@link #particle(int)} and {@link #toParticles()}.
+ */
+public final class ParticleStore {
+    private double[] x, y, vx, vy, r;
+    private double[] nextX, nextY, nextVx, nextVy, nextR;
+    private int[] id, goalSign, begin;
+    private int[] scratch = new int[0];
+    private int size;
+
+    public ParticleStore(int capacity) {
+        int cap = Math.max(1, capacity);
+        x = new double[cap];
+        y = new double[cap];
+        vx = new double[cap];
+        vy = new double[cap];
+        r = new double[cap];
+        nextX = new double[cap];
+        nextY = new double[cap];
+        nextVx = new double[cap];
+        nextVy = new double[cap];
+        nextR = new double[cap];
+        id = new int[cap];
+        goalSign = new int[cap];
+        begin = new int[cap];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double x(int i) {
+        return x[i];
+    }
+
+    public double y(int i) {
+        return y[i];
+    }
+
+    public double vx(int i) {
+        return vx[i];
+    }
+
+    public double vy(int i) {
+        return vy[i];
+    }
+
+    public double radius(int i) {
+        return r[i];
+    }
+
+    // Position before the last commitMotion(); only meaningful for particles that took part in that pass.
+    public double previousX(int i) {
+        return nextX[i];
+    }
+
+    public double previousY(int i) {
+        return nextY[i];
+    }
+
+    public int id(int i) {
+        return id[i];
+    }
+
+    public int goalSign(int i) {
+        return goalSign[i];
+    }
+
+    public int begin(int i) {
+        return begin[i];
+    }
+
+    // Copies position and radius of particles indices[start..start + count) to xs/ys/radii[0..count).
+    public void gather(int[] indices, int start, int count, double[] xs, double[] ys, double[] radii) {
+        for (int k = 0; k < count; k++) {
+            int j = indices[start + k];
+            xs[k] = x[j];
+            ys[k] = y[j];
+            radii[k] = r[j];
+        }
+    }
+
+    public int add(int pid, double px, double py, double pvx, double pvy, double radius, int goal, int beginX) {
+        if (size == x.length) {
+            grow(size * 2);
+        }
+        int i = size++;
+        x[i] = px;
+        y[i] = py;
+        vx[i] = pvx;
+        vy[i] = pvy;
+        r[i] = radius;
+        id[i] = pid;
+        goalSign[i] = goal;
+        begin[i] = beginX;
+        return i;
+    }
+
+    // Appends a copy of particle i of 'from'.
+    public int add(ParticleStore from, int i) {
+        return add(from.id[i], from.x[i], from.y[i], from.vx[i], from.vy[i], from.r[i], from.goalSign[i], from.begin[i]);
+    }
+
+    // Drops every particle from index 'size' on.
+    public void truncate(int size) {
+        if (size < 0 || size > this.size) {
+            throw new IndexOutOfBoundsException(size);
+        }
+        this.size = size;
+    }
+
+    /**
+     * Removes every particle i for which {@code remove.test(i)} holds, keeping the order of the
+     * rest, in one pass. Particles are tested in index order, each before anything moved over it.
+     *
+     * @return the number of particles removed
+     */
+    public int removeIf(IntPredicate remove) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (remove.test(i)) {
+                continue;
+            }
+            if (kept != i) {
+                x[kept] = x[i];
+                y[kept] = y[i];
+                vx[kept] = vx[i];
+                vy[kept] = vy[i];
+                r[kept] = r[i];
+                id[kept] = id[i];
+                goalSign[kept] = goalSign[i];
+                begin[kept] = begin[i];
+            }
+            kept++;
+        }
+        int removed = size - kept;
+        size = kept;
+        return removed;
+    }
+
+    /**
+     * Reorders the particles so that particle k is the former particle {@code order[k]}.
+     * {@code order[0..size)} must be a permutation of [0, size). Invalidates
+     * {@link #previousX(int)} and {@link #previousY(int)} until the next commitMotion().
+     */
+    public void permute(int[] order) {
+        // The next buffers are free between passes; gather into them and swap.
+        for (int k = 0; k < size; k++) {
+            int from = order[k];
+            nextX[k] = x[from];
+            nextY[k] = y[from];
+            nextVx[k] = vx[from];
+            nextVy[k] = vy[from];
+            nextR[k] = r[from];
+        }
+        commitMotion();
+        commitRadius();
+        if (scratch.length != x.length) {
+            scratch = new int[x.length];
+        }
+        id = permute(id, order);
+        goalSign = permute(goalSign, order);
+        begin = permute(begin, order);
+    }
+
+    private int[] permute(int[] column, int[] order) {
+        int[] result = scratch;
+        for (int k = 0; k < size; k++) {
+            result[k] = column[order[k]];
+        }
+        scratch = column;
+        return result;
+    }
+
+    // Overwrites the current radius, e.g. of a copy kept in step with its original.
+    public void setRadius(int i, double radius) {
+        r[i] = radius;
+    }
+
+    public void setNextRadius(int i, double radius) {
+        nextR[i] = radius;
+    }
+
+    public void setNextMotion(int i, double px, double py, double pvx, double pvy) {
+        nextX[i] = px;
+        nextY[i] = py;
+        nextVx[i] = pvx;
+        nextVy[i] = pvy;
+    }
+
+    // Makes the radii written by setNextRadius current.
+    public void commitRadius() {
+        double[] t = r;
+        r = nextR;
+        nextR = t;
+    }
+
+    // Makes the positions and velocities written by setNextMotion current.
+    public void commitMotion() {
+        double[] t = x;
+        x = nextX;
+        nextX = t;
+        t = y;
+        y = nextY;
+        nextY = t;
+        t = vx;
+        vx = nextVx;
+        nextVx = t;
+        t = vy;
+        vy = nextVy;
+        nextVy = t;
+    }
+
+    public Particle particle(int i) {
+        return new Particle(id[i], Vector2D.of(x[i], y[i]), Vector2D.of(vx[i], vy[i]), r[i], goalSign[i], begin[i]);
+    }
+
+    // Unmodifiable: the list ends up in a SimulationState, which frame sinks read on other threads.
+    public List<Particle> toParticles() {
+        List<Particle> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(particle(i));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private void grow(int capacity) {
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        r = Arrays.copyOf(r, capacity);
+        nextX = Arrays.copyOf(nextX, capacity);
+        nextY = Arrays.copyOf(nextY, capacity);
+        nextVx = Arrays.copyOf(nextVx, capacity);
+        nextVy = Arrays.copyOf(nextVy, capacity);
+        nextR = Arrays.copyOf(nextR, capacity);
+        id = Arrays.copyOf(id, capacity);
+        goalSign = Arrays.copyOf(goalSign, capacity);
+        begin = Arrays.copyOf(begin, capacity);
+    }
+}
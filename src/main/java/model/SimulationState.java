@@ -2,5 +2,5 @@ package model;
 
 import java.util.List;
 
-// Immutable snapshot of the simulation at a given tick.
-public record SimulationState(long tick, List<Particle> particles,int pedestriansSpawnedLeft,int pedestriansSpawnedRight) {}
\ No newline at end of file
+// Immutable snapshot of the simulation at a given tick; time is the simulated time of that tick in seconds.
+public record SimulationState(long tick, double time, List<Particle> particles,int pedestriansSpawnedLeft,int pedestriansSpawnedRight) {}
\ No newline at end of file
@@ -0,0 +1,81 @@
+package observe;
+
+import model.ParticleStore;
+import space.CellGrid;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Time-averaged density (pedestrians / m²) of every {@link CellGrid} cell between t1 and t2.
+ * Pedestrians outside the corridor, e.g. just spawned, are not counted. Each tick is
+ * weighted by the length of its step, known once the next tick arrives, so adaptive steps
+ * count for the time they cover; the last tick of a run is left out.
+ */
+public final class CellDensity implements Observer {
+    private final double length, width, t1, t2;
+    // Pedestrian-seconds per cell, and the seconds they were summed over.
+    private double[] counts;
+    private double seconds = 0;
+    private CellGrid grid;
+    // The last tick's counts and time, weighted once the next tick shows how long its step was.
+    private int[] pending;
+    private double pendingTime = Double.NaN;
+
+    public CellDensity(double corridorLength, double corridorWidth, double t1, double t2) {
+        this.length = corridorLength;
+        this.width = corridorWidth;
+        this.t1 = t1;
+        this.t2 = t2;
+    }
+
+    @Override
+    public void afterStep(ParticleStore particles, CellGrid grid, long tick, double time) {
+        if (!Double.isNaN(pendingTime)) {
+            double step = time - pendingTime;
+            for (int c = 0; c < pending.length; c++) {
+                counts[c] += step * pending[c];
+            }
+            seconds += step;
+            pendingTime = Double.NaN;
+        }
+        if (time < t1 || time > t2) {
+            return;
+        }
+        if (counts == null) {
+            this.grid = grid;
+            counts = new double[grid.cols() * grid.rows()];
+            pending = new int[counts.length];
+        }
+        Arrays.fill(pending, 0);
+        for (int i = 0; i < particles.size(); i++) {
+            double x = particles.x(i), y = particles.y(i);
+            if (x >= 0 && x <= length && y >= 0 && y <= width) {
+                pending[grid.cellIndex(x, y)]++;
+            }
+        }
+        pendingTime = time;
+    }
+
+    // Mean density of cell (col, row) over [t1, t2].
+    public double density(int col, int row) {
+        if (seconds == 0) {
+            return Double.NaN;
+        }
+        double cs = grid.cellSize();
+        double area = Math.min(cs, length - col * cs) * Math.min(cs, width - row * cs);
+        return counts[row * grid.cols() + col] / seconds / area;
+    }
+
+    @Override
+    public void summarise(Map<String, Double> summary) {
+        if (grid == null) {
+            return;
+        }
+        for (int row = 0; row < grid.rows(); row++) {
+            for (int col = 0; col < grid.cols(); col++) {
+                summary.put("density[" + row + "][" + col + "]", density(col, row));
+            }
+        }
+    }
+}
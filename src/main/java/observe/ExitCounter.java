@@ -0,0 +1,62 @@
+package observe;
+
+import model.ParticleStore;
+import space.CellGrid;
+
+import java.util.Map;
+
+/**
+ * Exit counts per side with the time of the first and the last exit, the latter being
+ * the evacuation time.
+ */
+public final class ExitCounter implements Observer {
+    private long exitsLeft, exitsRight;
+    private double firstLeft = Double.NaN, firstRight = Double.NaN;
+    private double lastLeft = Double.NaN, lastRight = Double.NaN;
+
+    @Override
+    public void afterStep(ParticleStore particles, CellGrid grid, long tick, double time) {
+    }
+
+    @Override
+    public void onExit(int id, int goalSign, double time) {
+        if (goalSign > 0) {
+            if (exitsRight++ == 0) {
+                firstRight = time;
+            }
+            lastRight = time;
+        } else {
+            if (exitsLeft++ == 0) {
+                firstLeft = time;
+            }
+            lastLeft = time;
+        }
+    }
+
+    public long exitsLeft() {
+        return exitsLeft;
+    }
+
+    public long exitsRight() {
+        return exitsRight;
+    }
+
+    // Time of the last exit on either side, NaN before any exit.
+    public double evacuationTime() {
+        if (Double.isNaN(lastLeft)) {
+            return lastRight;
+        }
+        return Double.isNaN(lastRight) ? lastLeft : Math.max(lastLeft, lastRight);
+    }
+
+    @Override
+    public void summarise(Map<String, Double> summary) {
+        summary.put("exits.left", (double) exitsLeft);
+        summary.put("exits.right", (double) exitsRight);
+        summary.put("exits.left.first", firstLeft);
+        summary.put("exits.right.first", firstRight);
+        summary.put("exits.left.last", lastLeft);
+        summary.put("exits.right.last", lastRight);
+        summary.put("evacuationTime", evacuationTime());
+    }
+}
@@ -0,0 +1,53 @@
+package observe;
+
+import model.ParticleStore;
+import space.CellGrid;
+
+import java.util.Map;
+
+/**
+ * Pedestrians crossing the measurement line x = lineX, per direction, and the resulting
+ * flow (pedestrians / s) between t1 and t2.
+ */
+public final class LineThroughput implements Observer {
+    private final double lineX, t1, t2;
+    private long rightwards, leftwards;
+    private long intervalCrossings;
+
+    public LineThroughput(double lineX, double t1, double t2) {
+        this.lineX = lineX;
+        this.t1 = t1;
+        this.t2 = t2;
+    }
+
+    @Override
+    public void afterStep(ParticleStore particles, CellGrid grid, long tick, double time) {
+        boolean inInterval = time >= t1 && time <= t2;
+        for (int i = 0; i < particles.size(); i++) {
+            double before = particles.previousX(i), after = particles.x(i);
+            if (before < lineX && after >= lineX) {
+                rightwards++;
+            } else if (before > lineX && after <= lineX) {
+                leftwards++;
+            } else {
+                continue;
+            }
+            if (inInterval) {
+                intervalCrossings++;
+            }
+        }
+    }
+
+    // Crossings per second, both directions, over [t1, t2].
+    public double flow() {
+        return intervalCrossings / (t2 - t1);
+    }
+
+    @Override
+    public void summarise(Map<String, Double> summary) {
+        summary.put("line.x", lineX);
+        summary.put("line.rightwards", (double) rightwards);
+        summary.put("line.leftwards", (double) leftwards);
+        summary.put("line.flow", flow());
+    }
+}
@@ -0,0 +1,39 @@
+package observe;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the results of a run's observers and writes them as a two-column
+ * {@code name,value} CSV.
+ */
+public final class ObservationSummary {
+
+    private ObservationSummary() {
+    }
+
+    public static Map<String, Double> collect(List<? extends Observer> observers) {
+        Map<String, Double> summary = new LinkedHashMap<>();
+        for (Observer observer : observers) {
+            observer.summarise(summary);
+        }
+        return summary;
+    }
+
+    public static void write(Path path, List<? extends Observer> observers) throws IOException {
+        try (BufferedWriter bw = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            bw.write("name,value");
+            bw.newLine();
+            for (Map.Entry<String, Double> e : collect(observers).entrySet()) {
+                bw.write(e.getKey() + "," + e.getValue());
+                bw.newLine();
+            }
+        }
+    }
+}
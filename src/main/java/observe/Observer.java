@@ -0,0 +1,49 @@
+package observe;
+
+import model.Parameters;
+import model.ParticleStore;
+import space.CellGrid;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming observable computed while the simulation runs, instead of from the frames
+ * afterwards. Implementations keep a bounded amount of state, independent of run length
+ * and population.
+ */
+public interface Observer {
+
+    /**
+     * Called after every step with the committed state of that tick.
+     * {@link ParticleStore#previousX(int)} holds the positions of the tick before.
+     */
+    void afterStep(ParticleStore particles, CellGrid grid, long tick, double time);
+
+    /**
+     * Called once for every pedestrian reaching its exit, before {@link #afterStep}.
+     *
+     * @param goalSign +1 for the right exit, -1 for the left one
+     */
+    default void onExit(int id, int goalSign, double time) {
+    }
+
+    /**
+     * Adds this observer's results, as named values, to the run summary.
+     */
+    void summarise(Map<String, Double> summary);
+
+    /**
+     * The observables of graphs.py and study_ap_qin8.py: exits, mean |vx| over a 1 s window
+     * averaged over 10-40 s, cell densities and the flow through the middle of the corridor
+     * over the same interval.
+     */
+    static List<Observer> standard(Parameters p) {
+        double t1 = 10.0, t2 = 40.0;
+        return List.of(
+                new ExitCounter(),
+                new WindowedSpeed(1.0, p.dt(), t1, t2),
+                new CellDensity(p.corridorLength(), p.corridorWidth(), t1, t2),
+                new LineThroughput(p.corridorLength() / 2, t1, t2));
+    }
+}
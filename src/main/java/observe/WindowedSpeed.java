@@ -0,0 +1,120 @@
+package observe;
+
+import model.ParticleStore;
+import space.CellGrid;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Mean |vx| over a sliding time window (graphs.py uses 1 s), and the average of that
+ * windowed mean between t1 and t2.
+ * <p>
+ * Each tick's mean is weighted by the length of its step, known once the next tick
+ * arrives, so adaptive steps count for the time they cover; the last tick of a run is
+ * left out. The window holds the means that ended within the last {@code windowSeconds},
+ * window / dt values with the model's step whatever the population. Unlike graphs.py,
+ * which uses the displacement over the window, this averages the instantaneous |vx|;
+ * both agree while pedestrians walk straight.
+ */
+public final class WindowedSpeed implements Observer {
+    // Slack on the window's start, for times summed step by step.
+    private static final double TIME_EPS = 1e-9;
+    private final double windowSeconds;
+    private final double t1, t2;
+    // Ring of the means in the window, with the time their step ended and its length.
+    private double[] means, ends, weights;
+    private int first = 0, filled = 0;
+    private double windowSum = 0, windowWeight = 0;
+    private double intervalSum = 0, intervalWeight = 0;
+    // The last tick's mean and time, weighted once the next tick shows how long its step was.
+    private double pendingMean, pendingTime = Double.NaN;
+
+    /**
+     * @param dt the model's step, which only sizes the window's initial buffer
+     */
+    public WindowedSpeed(double windowSeconds, double dt, double t1, double t2) {
+        int capacity = Math.max(1, (int) Math.ceil(windowSeconds / dt) + 1);
+        this.means = new double[capacity];
+        this.ends = new double[capacity];
+        this.weights = new double[capacity];
+        this.windowSeconds = windowSeconds;
+        this.t1 = t1;
+        this.t2 = t2;
+    }
+
+    @Override
+    public void afterStep(ParticleStore particles, CellGrid grid, long tick, double time) {
+        if (!Double.isNaN(pendingTime)) {
+            record(pendingMean, pendingTime, time - pendingTime);
+        }
+        int n = particles.size();
+        double tickMean = 0;
+        if (n > 0) {
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += Math.abs(particles.vx(i));
+            }
+            tickMean = sum / n;
+        }
+        pendingMean = tickMean;
+        pendingTime = time;
+    }
+
+    // Adds the mean of the step [start, start + length] and drops the means that ended before the window.
+    private void record(double mean, double start, double length) {
+        double end = start + length;
+        while (filled > 0 && ends[first] <= end - windowSeconds + TIME_EPS) {
+            windowSum -= weights[first] * means[first];
+            windowWeight -= weights[first];
+            first = (first + 1) % means.length;
+            filled--;
+        }
+        if (filled == means.length) {
+            grow();
+        }
+        int at = (first + filled) % means.length;
+        means[at] = mean;
+        ends[at] = end;
+        weights[at] = length;
+        filled++;
+        windowSum += length * mean;
+        windowWeight += length;
+
+        if (start >= t1 && start <= t2) {
+            intervalSum += length * windowedMean();
+            intervalWeight += length;
+        }
+    }
+
+    private void grow() {
+        int capacity = 2 * means.length;
+        means = unroll(means, capacity);
+        ends = unroll(ends, capacity);
+        weights = unroll(weights, capacity);
+        first = 0;
+    }
+
+    private double[] unroll(double[] ring, int capacity) {
+        double[] copy = Arrays.copyOf(ring, capacity);
+        System.arraycopy(ring, first, copy, 0, ring.length - first);
+        System.arraycopy(ring, 0, copy, ring.length - first, first);
+        return copy;
+    }
+
+    public double windowedMean() {
+        return filled == 0 ? Double.NaN : windowSum / windowWeight;
+    }
+
+    // Time average of the windowed mean over [t1, t2], NaN if the run ended before t1.
+    public double intervalMean() {
+        return intervalWeight == 0 ? Double.NaN : intervalSum / intervalWeight;
+    }
+
+    @Override
+    public void summarise(Map<String, Double> summary) {
+        summary.put("vx.abs.mean", intervalMean());
+        summary.put("vx.abs.t1", t1);
+        summary.put("vx.abs.t2", t2);
+    }
+}
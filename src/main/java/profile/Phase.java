@@ -0,0 +1,25 @@
+package profile;
+
+/**
+ * The parts of a tick {@link TickProfiler} times separately, in the order a step runs them.
+ */
+public enum Phase {
+    // Injecting the pedestrians of this tick.
+    SPAWN,
+    // Rebuilding the cell grid, including the periodic reorder of the particle store.
+    GRID,
+    // Collecting the neighbour lists of every particle.
+    NEIGHBOURS,
+    // Choosing the step length; only does work with adaptive time stepping.
+    STEP_SIZE,
+    // Contact tests and radius update.
+    RADIUS,
+    // Contact tests, avoidance and integration.
+    MOTION,
+    // Tallying the pedestrians that reached an exit and removing the previous tick's.
+    EXITS,
+    // Streaming observers.
+    OBSERVERS,
+    // Frame output; lapped by the run loop after the step, zero when it does not.
+    OUTPUT
+}
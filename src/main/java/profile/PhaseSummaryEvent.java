@@ -0,0 +1,37 @@
+package profile;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// Percentiles of one phase over a summary window; phase "TICK" is the whole tick.
+@Name("pedestrian.PhaseSummary")
+@Label("Simulation Phase Summary")
+@Category("Pedestrian Dynamics")
+@StackTrace(false)
+final class PhaseSummaryEvent extends jdk.jfr.Event {
+    @Label("First Tick")
+    long firstTick;
+
+    @Label("Ticks")
+    int ticks;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("p50")
+    @Timespan
+    long p50;
+
+    @Label("p99")
+    @Timespan
+    long p99;
+
+    @Label("Ticks per Second")
+    double ticksPerSecond;
+
+    @Label("Agent Ticks per Second")
+    double agentTicksPerSecond;
+}
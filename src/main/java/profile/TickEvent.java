@@ -0,0 +1,71 @@
+package profile;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// One simulation tick, spanning from the start of the step to the end of its frame output.
+@Name("pedestrian.Tick")
+@Label("Simulation Tick")
+@Category("Pedestrian Dynamics")
+@StackTrace(false)
+final class TickEvent extends jdk.jfr.Event {
+    @Label("Tick")
+    long tick;
+
+    @Label("Particles")
+    int particles;
+
+    @Label("Spawn")
+    @Timespan
+    long spawn;
+
+    @Label("Grid")
+    @Timespan
+    long grid;
+
+    @Label("Neighbours")
+    @Timespan
+    long neighbours;
+
+    @Label("Step Size")
+    @Timespan
+    long stepSize;
+
+    @Label("Radius Pass")
+    @Timespan
+    long radius;
+
+    @Label("Motion Pass")
+    @Timespan
+    long motion;
+
+    @Label("Exits")
+    @Timespan
+    long exits;
+
+    @Label("Observers")
+    @Timespan
+    long observers;
+
+    @Label("Output")
+    @Timespan
+    long output;
+
+    @Label("Neighbour Candidates")
+    @Description("Entries of all neighbour lists of the tick")
+    long candidates;
+
+    @Label("Contacts")
+    @Description("Overlapping pairs found by the motion pass, counted from both sides")
+    long contacts;
+
+    @Label("Allocated")
+    @Description("Bytes allocated by the stepping thread, -1 if the JVM does not tell")
+    @DataAmount
+    long allocated;
+}
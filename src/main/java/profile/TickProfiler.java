@@ -0,0 +1,258 @@
+package profile;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Per-phase tick timer of one engine, enabled by passing it in {@link engine.EngineOptions}.
+ * Without one the engine only tests a null field per phase, so it costs nothing when off.
+ * <p>
+ * Every tick goes out as a {@code pedestrian.Tick} JFR event when a recording has that
+ * event enabled. Every {@code interval} ticks, and on {@link #flush()}, the window's
+ * {@link Summary} goes to the sink and out as {@code pedestrian.PhaseSummary} events.
+ * Memory is bounded by the interval. Not thread-safe: ticks are started and lapped on the
+ * stepping thread, and allocations are only counted on that thread.
+ */
+public final class TickProfiler {
+    private static final Phase[] PHASES = Phase.values();
+
+    private final int interval;
+    private final Consumer<Summary> sink;
+    private final com.sun.management.ThreadMXBean threads;
+    // Samples of the current window; column k is its k-th tick.
+    private final long[][] phaseNanos;
+    private final long[] tickNanos, candidates, contacts, allocated;
+    private final int[] particles;
+    private int count = 0;
+    private long firstTick, windowStart, windowEnd;
+    private boolean open = false;
+    private long tick, tickStart, mark, allocatedAtStart;
+    private TickEvent event;
+
+    public TickProfiler(int interval, Consumer<Summary> sink) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+        this.interval = interval;
+        this.sink = sink;
+        this.threads = allocationCounter();
+        this.phaseNanos = new long[PHASES.length][interval];
+        this.tickNanos = new long[interval];
+        this.candidates = new long[interval];
+        this.contacts = new long[interval];
+        this.allocated = new long[interval];
+        this.particles = new int[interval];
+    }
+
+    // Prints a summary to stderr every 'interval' ticks.
+    public static TickProfiler printing(int interval) {
+        return new TickProfiler(interval, System.err::println);
+    }
+
+    // Only emits JFR events; the periodic summaries are dropped.
+    public static TickProfiler jfrOnly(int interval) {
+        return new TickProfiler(interval, s -> {
+        });
+    }
+
+    /**
+     * Starts timing a tick, finishing the previous one first.
+     */
+    public void startTick(long tick) {
+        if (open) {
+            finishTick();
+        }
+        event = new TickEvent();
+        allocatedAtStart = allocatedBytes();
+        for (long[] column : phaseNanos) {
+            column[count] = 0;
+        }
+        candidates[count] = 0;
+        contacts[count] = 0;
+        particles[count] = 0;
+        this.tick = tick;
+        open = true;
+        event.begin();
+        tickStart = mark = System.nanoTime();
+        if (count == 0) {
+            firstTick = tick;
+            windowStart = tickStart;
+        }
+    }
+
+    /**
+     * Charges the time since the last lap (or the start of the tick) to {@code phase}.
+     */
+    public void lap(Phase phase) {
+        long now = System.nanoTime();
+        if (open) {
+            phaseNanos[phase.ordinal()][count] += now - mark;
+        }
+        mark = now;
+    }
+
+    // Work done by the tick: pedestrians stepped, neighbour list entries, contacts found.
+    public void count(int particles, long candidates, long contacts) {
+        if (open) {
+            this.particles[count] = particles;
+            this.candidates[count] = candidates;
+            this.contacts[count] = contacts;
+        }
+    }
+
+    /**
+     * Finishes the open tick and reports the window so far; call once the run is over.
+     */
+    public void flush() {
+        if (open) {
+            finishTick();
+        }
+        if (count > 0) {
+            report();
+        }
+    }
+
+    private void finishTick() {
+        long now = System.nanoTime();
+        int k = count;
+        tickNanos[k] = now - tickStart;
+        allocated[k] = threads == null ? -1 : allocatedBytes() - allocatedAtStart;
+        event.end();
+        if (event.shouldCommit()) {
+            event.tick = tick;
+            event.particles = particles[k];
+            event.spawn = phaseNanos[Phase.SPAWN.ordinal()][k];
+            event.grid = phaseNanos[Phase.GRID.ordinal()][k];
+            event.neighbours = phaseNanos[Phase.NEIGHBOURS.ordinal()][k];
+            event.stepSize = phaseNanos[Phase.STEP_SIZE.ordinal()][k];
+            event.radius = phaseNanos[Phase.RADIUS.ordinal()][k];
+            event.motion = phaseNanos[Phase.MOTION.ordinal()][k];
+            event.exits = phaseNanos[Phase.EXITS.ordinal()][k];
+            event.observers = phaseNanos[Phase.OBSERVERS.ordinal()][k];
+            event.output = phaseNanos[Phase.OUTPUT.ordinal()][k];
+            event.candidates = candidates[k];
+            event.contacts = contacts[k];
+            event.allocated = allocated[k];
+            event.commit();
+        }
+        event = null;
+        open = false;
+        windowEnd = now;
+        count++;
+        if (count == interval) {
+            report();
+        }
+    }
+
+    private void report() {
+        int n = count;
+        long agentTicks = 0;
+        double candidateSum = 0, contactSum = 0, allocatedSum = 0;
+        for (int k = 0; k < n; k++) {
+            agentTicks += particles[k];
+            candidateSum += candidates[k];
+            contactSum += contacts[k];
+            allocatedSum += allocated[k];
+        }
+        long[] sorted = new long[n];
+        Map<Phase, Percentiles> phases = new EnumMap<>(Phase.class);
+        for (Phase phase : PHASES) {
+            phases.put(phase, percentiles(phaseNanos[phase.ordinal()], sorted, n));
+        }
+        Summary summary = new Summary(firstTick, n, windowEnd - windowStart, agentTicks,
+                percentiles(tickNanos, sorted, n), phases, candidateSum / n, contactSum / n,
+                threads == null ? -1 : allocatedSum / n);
+        count = 0;
+
+        PhaseSummaryEvent probe = new PhaseSummaryEvent();
+        if (probe.isEnabled()) {
+            commit(summary, "TICK", summary.tick());
+            for (Map.Entry<Phase, Percentiles> e : phases.entrySet()) {
+                commit(summary, e.getKey().name(), e.getValue());
+            }
+        }
+        sink.accept(summary);
+    }
+
+    private static void commit(Summary s, String phase, Percentiles p) {
+        PhaseSummaryEvent e = new PhaseSummaryEvent();
+        e.firstTick = s.firstTick();
+        e.ticks = s.ticks();
+        e.phase = phase;
+        e.p50 = p.p50();
+        e.p99 = p.p99();
+        e.ticksPerSecond = s.ticksPerSecond();
+        e.agentTicksPerSecond = s.agentTicksPerSecond();
+        e.commit();
+    }
+
+    // Nearest-rank percentiles of samples[0..n).
+    private static Percentiles percentiles(long[] samples, long[] sorted, int n) {
+        System.arraycopy(samples, 0, sorted, 0, n);
+        Arrays.sort(sorted, 0, n);
+        return new Percentiles(sorted[rank(0.50, n)], sorted[rank(0.99, n)]);
+    }
+
+    private static int rank(double q, int n) {
+        return Math.max(0, (int) Math.ceil(q * n) - 1);
+    }
+
+    private long allocatedBytes() {
+        return threads == null ? 0 : threads.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported()) {
+            if (!bean.isThreadAllocatedMemoryEnabled()) {
+                bean.setThreadAllocatedMemoryEnabled(true);
+            }
+            return bean;
+        }
+        return null;
+    }
+
+    public record Percentiles(long p50, long p99) {
+    }
+
+    /**
+     * One reporting window. Times are in nanoseconds; {@code wallNanos} runs from the start
+     * of the first tick to the end of the last, so it includes the run loop between ticks.
+     *
+     * @param allocatedBytesPerTick mean allocation of the stepping thread, -1 if unknown
+     */
+    public record Summary(long firstTick, int ticks, long wallNanos, long agentTicks, Percentiles tick,
+                          Map<Phase, Percentiles> phases, double candidatesPerTick, double contactsPerTick,
+                          double allocatedBytesPerTick) {
+
+        public double ticksPerSecond() {
+            return ticks * 1e9 / wallNanos;
+        }
+
+        public double agentTicksPerSecond() {
+            return agentTicks * 1e9 / wallNanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("ticks %d-%d: %.0f ticks/s, %.3g agent-ticks/s, %.1f particles, %.0f candidates, "
+                            + "%.0f contacts, %s allocated per tick%n", firstTick, firstTick + ticks - 1,
+                    ticksPerSecond(), agentTicksPerSecond(), (double) agentTicks / ticks, candidatesPerTick,
+                    contactsPerTick, allocatedBytesPerTick < 0 ? "n/a" : String.format("%.0f B", allocatedBytesPerTick)));
+            sb.append(String.format("  %-11s %10s %10s%n", "phase", "p50 (us)", "p99 (us)"));
+            for (Map.Entry<Phase, Percentiles> e : phases.entrySet()) {
+                row(sb, e.getKey().name().toLowerCase(), e.getValue());
+            }
+            row(sb, "tick", tick);
+            return sb.toString();
+        }
+
+        private static void row(StringBuilder sb, String name, Percentiles p) {
+            sb.append(String.format("  %-11s %10.1f %10.1f%n", name, p.p50() / 1e3, p.p99() / 1e3));
+        }
+    }
+}
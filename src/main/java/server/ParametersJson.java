@@ -0,0 +1,193 @@
+package server;
+
+import model.Layout;
+import model.Parameters;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.DoubleConsumer;
+
+/**
+ * {@link Parameters} as a JSON object, named after the {@link Parameters.Builder} setters.
+ * Every field is optional and keeps the builder's default; the seed too, which is then
+ * random:
+ * <pre>
+ * {"desiredSpeed": 1.5, "Ap": 1.1, "Bp": 2.1, "beta": 0.9, "tau": 0.5, "dt": 0.0333, "outputDt": 0.1,
+ *  "corridorLength": 16, "corridorWidth": 3.6, "inflow": 3, "population": 100, "exitsPerSide": 100,
+ *  "spawnAdmission": false, "rMin": 0.1, "rMax": 0.35, "Aw": 1215, "Bw": 0.025, "seed": 42,
+ *  "layout": {"walls": [[x1, y1, x2, y2], ...], "doors": [{"end": "LEFT", "from": 1.2, "to": 2.4}], "resolution": 0.05}}
+ * </pre>
+ */
+final class ParametersJson {
+    private static final Set<String> FIELDS = Set.of("desiredSpeed", "Ap", "Bp", "beta", "tau", "dt", "outputDt",
+            "corridorLength", "corridorWidth", "inflow", "population", "exitsPerSide", "spawnAdmission", "rMin",
+            "rMax", "Aw", "Bw", "seed", "layout");
+
+    private ParametersJson() {
+    }
+
+    static Parameters parse(Map<String, Object> json) {
+        for (String name : json.keySet()) {
+            if (!FIELDS.contains(name)) {
+                throw new IllegalArgumentException("Unknown parameter " + name);
+            }
+        }
+        Parameters defaults = Parameters.builder().seed(0).build();
+        Parameters.Builder b = Parameters.builder();
+        numberField(json, "desiredSpeed", b::desiredSpeed);
+        numberField(json, "Ap", b::Ap);
+        numberField(json, "Bp", b::Bp);
+        numberField(json, "beta", b::beta);
+        numberField(json, "tau", b::tau);
+        numberField(json, "dt", b::dt);
+        numberField(json, "outputDt", b::outputDt);
+        if (json.containsKey("corridorLength") || json.containsKey("corridorWidth")) {
+            b.corridor(json.containsKey("corridorLength") ? number(json, "corridorLength") : defaults.corridorLength(),
+                    json.containsKey("corridorWidth") ? number(json, "corridorWidth") : defaults.corridorWidth());
+        }
+        numberField(json, "inflow", b::inflow);
+        // Before exitsPerSide, which it sets as well.
+        if (json.containsKey("population")) {
+            b.population(integer(json, "population"));
+        }
+        if (json.containsKey("exitsPerSide")) {
+            b.exitsPerSide(integer(json, "exitsPerSide"));
+        }
+        if (json.containsKey("spawnAdmission")) {
+            b.spawnAdmission(bool(json, "spawnAdmission"));
+        }
+        numberField(json, "rMin", b::rMin);
+        numberField(json, "rMax", b::rMax);
+        numberField(json, "Aw", b::Aw);
+        numberField(json, "Bw", b::Bw);
+        if (json.containsKey("seed")) {
+            b.seed(longValue(json.get("seed"), "seed"));
+        }
+        if (json.containsKey("layout")) {
+            b.layout(layout(object(json.get("layout"), "layout")));
+        }
+        return b.build();
+    }
+
+    // The JSON parse accepts, seed and layout included.
+    static Map<String, Object> write(Parameters p) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("desiredSpeed", p.vMax());
+        json.put("Ap", p.A_p());
+        json.put("Bp", p.B_p());
+        json.put("beta", p.beta());
+        json.put("tau", p.tau());
+        json.put("dt", p.dt());
+        json.put("outputDt", p.outputDt());
+        json.put("corridorLength", p.corridorLength());
+        json.put("corridorWidth", p.corridorWidth());
+        json.put("inflow", p.inflowPerSide());
+        json.put("population", p.spawnLimitPerSide());
+        json.put("exitsPerSide", p.exitsPerSide());
+        json.put("spawnAdmission", p.spawnAdmission());
+        json.put("rMin", p.rMin());
+        json.put("rMax", p.rMax());
+        json.put("Aw", p.A_w());
+        json.put("Bw", p.B_w());
+        json.put("seed", p.seed());
+        Layout layout = p.layout();
+        if (!layout.isCorridor() || layout.resolution() != Layout.DEFAULT_RESOLUTION) {
+            List<Object> walls = new ArrayList<>();
+            for (Layout.Wall w : layout.walls()) {
+                walls.add(List.of(w.x1(), w.y1(), w.x2(), w.y2()));
+            }
+            List<Object> doors = new ArrayList<>();
+            for (Layout.Door d : layout.doors()) {
+                Map<String, Object> door = new LinkedHashMap<>();
+                door.put("end", d.end().name());
+                door.put("from", d.from());
+                door.put("to", d.to());
+                doors.add(door);
+            }
+            Map<String, Object> layoutJson = new LinkedHashMap<>();
+            layoutJson.put("walls", walls);
+            layoutJson.put("doors", doors);
+            layoutJson.put("resolution", layout.resolution());
+            json.put("layout", layoutJson);
+        }
+        return json;
+    }
+
+    private static Layout layout(Map<String, Object> json) {
+        Layout.Builder b = Layout.builder();
+        for (Object wall : list(json.getOrDefault("walls", List.of()), "layout.walls")) {
+            List<Object> xy = list(wall, "layout.walls");
+            if (xy.size() != 4) {
+                throw new IllegalArgumentException("A wall is [x1, y1, x2, y2]");
+            }
+            b.wall(number(xy.get(0), "wall"), number(xy.get(1), "wall"), number(xy.get(2), "wall"),
+                    number(xy.get(3), "wall"));
+        }
+        for (Object door : list(json.getOrDefault("doors", List.of()), "layout.doors")) {
+            Map<String, Object> d = object(door, "layout.doors");
+            Object end = d.get("end");
+            if (!(end instanceof String name)) {
+                throw new IllegalArgumentException("A door needs an end, LEFT or RIGHT");
+            }
+            b.door(Layout.End.valueOf(name), number(d, "from"), number(d, "to"));
+        }
+        if (json.containsKey("resolution")) {
+            b.resolution(number(json, "resolution"));
+        }
+        return b.build();
+    }
+
+    private static void numberField(Map<String, Object> json, String name, DoubleConsumer setter) {
+        if (json.containsKey(name)) {
+            setter.accept(number(json, name));
+        }
+    }
+
+    private static double number(Map<String, Object> json, String name) {
+        return number(json.get(name), name);
+    }
+
+    private static double number(Object value, String name) {
+        if (value instanceof Number n) {
+            return n.doubleValue();
+        }
+        throw new IllegalArgumentException(name + " must be a number");
+    }
+
+    private static int integer(Map<String, Object> json, String name) {
+        return Math.toIntExact(longValue(json.get(name), name));
+    }
+
+    private static long longValue(Object value, String name) {
+        if (value instanceof Long l) {
+            return l;
+        }
+        throw new IllegalArgumentException(name + " must be an integer");
+    }
+
+    private static boolean bool(Map<String, Object> json, String name) {
+        if (json.get(name) instanceof Boolean b) {
+            return b;
+        }
+        throw new IllegalArgumentException(name + " must be true or false");
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> object(Object value, String name) {
+        if (value instanceof Map<?, ?> m) {
+            return (Map<String, Object>) m;
+        }
+        throw new IllegalArgumentException(name + " must be an object");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> list(Object value, String name) {
+        if (value instanceof List<?> l) {
+            return (List<Object>) l;
+        }
+        throw new IllegalArgumentException(name + " must be an array");
+    }
+}
@@ -0,0 +1,418 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import engine.EngineOptions;
+import engine.SimulationEngine;
+import ensemble.EnsembleRunner;
+import ensemble.Objective;
+import ensemble.ResultCache;
+import io.CsvFrameWriter;
+import io.OutputSchedule;
+import model.Parameters;
+import model.SimulationState;
+import observe.ObservationSummary;
+import observe.Observer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local HTTP job API, so one warm JVM serves many short runs instead of a fresh
+ * {@code PedestrianDynamics} per experiment. Requests are handled on virtual threads; the
+ * runs themselves queue for a fixed pool of platform threads, one per core by default.
+ * <pre>
+ * POST   /runs                      {"parameters": {...}, "maxTime": 120}  start a run, answers its id at once
+ * POST   /runs?stream=frames        same, answering with the run's frames as CSV while it runs
+ * POST   /runs?stream=observables   same, answering with a JSON line per "every" simulated seconds (1 by default)
+ * GET    /runs/{id}                 status, parameters and, once done, the observer summary
+ * DELETE /runs/{id}                 cancels the run; a finished one is forgotten
+ * </pre>
+ * Parameters are the JSON of {@link ParametersJson}. Every run has the
+ * {@link Observer#standard standard observers}; its summary, with
+ * {@link Objective#RUN_TIME} and {@link Objective#RUN_FINISHED}, goes into a
+ * {@link ResultCache} under the parameter hash and seed. A run already in the cache is
+ * answered from it without simulating, unless its frames are asked for.
+ * <p>
+ * Streamed responses are chunked. The run hands frames or lines over through a short queue,
+ * so a slow client slows its run down rather than piling up frames; a client that hangs up
+ * cancels it. A streamed run's id is in the {@code X-Run-Id} header, for its final status.
+ * <p>
+ * A settled run is forgotten after the retention period (10 minutes by default), so a
+ * long-lived server does not keep every job; its summary stays in the cache.
+ */
+public final class SimulationServer implements AutoCloseable {
+    // Frames or lines a streamed run may get ahead of its client.
+    private static final int STREAM_CAPACITY = 16;
+    public static final Duration DEFAULT_RETENTION = Duration.ofMinutes(10);
+
+    private final HttpServer http;
+    private final ExecutorService handlers = Executors.newVirtualThreadPerTaskExecutor();
+    private final ExecutorService pool;
+    private final ResultCache cache;
+    private final int maxParticles;
+    private final long retentionNanos;
+    private final Map<Long, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    public SimulationServer(InetSocketAddress address, int threads, ResultCache cache) throws IOException {
+        this(address, threads, cache, EnsembleRunner.DEFAULT_MAX_PARTICLES);
+    }
+
+    public SimulationServer(InetSocketAddress address, int threads, ResultCache cache, int maxParticles)
+            throws IOException {
+        this(address, threads, cache, maxParticles, DEFAULT_RETENTION);
+    }
+
+    /**
+     * @param retention how long a settled run stays available to {@code GET /runs/{id}}
+     */
+    public SimulationServer(InetSocketAddress address, int threads, ResultCache cache, int maxParticles,
+                            Duration retention) throws IOException {
+        this.retentionNanos = retention.toNanos();
+        this.http = HttpServer.create(address, 0);
+        this.pool = Executors.newFixedThreadPool(threads);
+        this.cache = cache;
+        this.maxParticles = maxParticles;
+        http.setExecutor(handlers);
+        http.createContext("/runs", this::handle);
+    }
+
+    // On localhost only.
+    public static SimulationServer usingAllCores(int port, ResultCache cache) throws IOException {
+        return new SimulationServer(new InetSocketAddress("localhost", port),
+                Runtime.getRuntime().availableProcessors(), cache);
+    }
+
+    /**
+     * Serves on port {@code args[0]} (8080 by default) of localhost, caching in directory
+     * {@code args[1]}, or in memory without it.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        ResultCache cache = args.length > 1 ? ResultCache.in(Path.of(args[1])) : ResultCache.inMemory();
+        SimulationServer server = usingAllCores(port, cache).start();
+        System.out.println("Serving runs on http://localhost:" + server.port() + "/runs");
+    }
+
+    public SimulationServer start() {
+        http.start();
+        return this;
+    }
+
+    public int port() {
+        return http.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            String[] path = ex.getRequestURI().getPath().split("/");
+            String method = ex.getRequestMethod();
+            if (path.length == 2 && method.equals("POST")) {
+                submit(ex);
+            } else if (path.length == 3) {
+                Job job = jobs.get(parseId(path[2]));
+                if (job == null) {
+                    send(ex, 404, Map.of("error", "No run " + path[2]));
+                } else if (method.equals("GET")) {
+                    send(ex, 200, job.status());
+                } else if (method.equals("DELETE")) {
+                    if (job.isSettled()) {
+                        jobs.remove(job.id);
+                    } else {
+                        job.cancel();
+                    }
+                    send(ex, 200, job.status());
+                } else {
+                    send(ex, 405, Map.of("error", method + " not allowed"));
+                }
+            } else {
+                send(ex, path.length == 2 ? 405 : 404, Map.of("error", method + " " + ex.getRequestURI() + " unknown"));
+            }
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            send(ex, 400, Map.of("error", String.valueOf(e.getMessage())));
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void submit(HttpExchange ex) throws IOException {
+        String stream = query(ex, "stream");
+        if (stream != null && !stream.equals("frames") && !stream.equals("observables")) {
+            throw new IllegalArgumentException("stream is frames or observables");
+        }
+        String body = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        Map<String, Object> request = body.isBlank() ? Map.of() : ParametersJson.object(Json.parse(body), "The body");
+        for (String name : request.keySet()) {
+            if (!List.of("parameters", "maxTime", "every").contains(name)) {
+                throw new IllegalArgumentException("Unknown field " + name);
+            }
+        }
+        Parameters p = ParametersJson.parse(ParametersJson.object(request.getOrDefault("parameters", Map.of()), "parameters"));
+        double maxTime = positive(request.getOrDefault("maxTime", Double.POSITIVE_INFINITY), "maxTime");
+        double every = positive(request.getOrDefault("every", 1.0), "every");
+
+        boolean frames = "frames".equals(stream);
+        evictSettled();
+        Job job = new Job(nextId.getAndIncrement(), p, maxTime, every, stream != null, frames);
+        jobs.put(job.id, job);
+        Map<String, Double> cached = frames ? null : cached(p, maxTime);
+        if (cached != null) {
+            job.answer(cached);
+        } else {
+            pool.execute(job.task);
+        }
+        if (stream == null) {
+            send(ex, 202, job.status());
+        } else {
+            stream(ex, job);
+        }
+    }
+
+    // Forgets the runs settled longer than the retention period ago.
+    private void evictSettled() {
+        long now = System.nanoTime();
+        jobs.values().removeIf(job -> job.isSettled() && now - job.settledAt > retentionNanos);
+    }
+
+    // The cached summary of the same run, if any: one with the same observers that stopped where this one would.
+    private Map<String, Double> cached(Parameters p, double maxTime) throws IOException {
+        Map<String, Double> summary;
+        synchronized (cache) {
+            summary = cache.get(p);
+        }
+        if (summary == null || !summary.keySet().containsAll(ObservationSummary.collect(Observer.standard(p)).keySet())) {
+            return null;
+        }
+        Double time = summary.get(Objective.RUN_TIME), finished = summary.get(Objective.RUN_FINISHED);
+        if (time == null || finished == null) {
+            return null;
+        }
+        // The last step started at time - dt, so it was taken within maxTime; an unfinished run stopped right after it.
+        boolean lastStepWithin = time - p.dt() <= maxTime + p.dt() / 2;
+        return lastStepWithin && (finished == 1.0 || time > maxTime) ? summary : null;
+    }
+
+    /**
+     * Sends the run's frames, or its lines and a last one with its status, as they come,
+     * until it is settled. Cancels the run when the client is gone.
+     */
+    private void stream(HttpExchange ex, Job job) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", job.frames ? "text/csv" : "application/x-ndjson");
+        ex.getResponseHeaders().set("X-Run-Id", Long.toString(job.id));
+        ex.sendResponseHeaders(200, 0);
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(ex.getResponseBody(), StandardCharsets.UTF_8));
+        CsvFrameWriter csv = new CsvFrameWriter(out, job.params.dt(), job.params.outputDt());
+        try {
+            while (true) {
+                Object next = job.stream.poll(100, TimeUnit.MILLISECONDS);
+                if (next == null) {
+                    // Settled only after its last put, so nothing more can come.
+                    if (job.isSettled() && job.stream.isEmpty()) {
+                        break;
+                    }
+                    continue;
+                }
+                if (next instanceof SimulationState frame) {
+                    csv.writeFrame(frame);
+                } else {
+                    out.write((String) next);
+                    out.newLine();
+                }
+                if (job.stream.isEmpty()) {
+                    out.flush();
+                }
+            }
+            if (!job.frames) {
+                out.write(Json.write(job.status()));
+                out.newLine();
+            }
+            out.flush();
+        } catch (IOException e) {
+            job.cancel();
+            throw e;
+        } catch (InterruptedException e) {
+            job.cancel();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void send(HttpExchange ex, int code, Map<String, ?> json) throws IOException {
+        byte[] bytes = Json.write(json).getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(code, bytes.length);
+        try (OutputStream body = ex.getResponseBody()) {
+            body.write(bytes);
+        }
+    }
+
+    private static String query(HttpExchange ex, String name) {
+        String query = ex.getRequestURI().getQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.startsWith(name + "=")) {
+                return pair.substring(name.length() + 1);
+            }
+        }
+        return null;
+    }
+
+    private static long parseId(String text) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static double positive(Object value, String name) {
+        if (value instanceof Number n && n.doubleValue() > 0) {
+            return n.doubleValue();
+        }
+        throw new IllegalArgumentException(name + " must be a positive number");
+    }
+
+    @Override
+    public void close() {
+        http.stop(0);
+        pool.shutdownNow();
+        handlers.shutdownNow();
+    }
+
+    private enum Status {
+        QUEUED, RUNNING, DONE, CANCELLED, FAILED
+    }
+
+    /**
+     * One submitted run, from queued to settled (done, cancelled or failed), with what
+     * {@code GET /runs/{id}} reports about it.
+     */
+    private final class Job implements Runnable {
+        final long id;
+        final Parameters params;
+        final double maxTime, every;
+        final boolean frames;
+        // Frames or JSON lines for the client; null unless streamed.
+        final BlockingQueue<Object> stream;
+        final FutureTask<Void> task = new FutureTask<>(this, null);
+        private volatile Status status = Status.QUEUED;
+        private volatile double time = 0;
+        private volatile Map<String, Double> summary;
+        private volatile boolean cached = false;
+        private volatile String error;
+        // System.nanoTime() when the job settled; written before the status that settles it.
+        private volatile long settledAt;
+
+        Job(long id, Parameters params, double maxTime, double every, boolean streamed, boolean frames) {
+            this.id = id;
+            this.params = params;
+            this.maxTime = maxTime;
+            this.every = every;
+            this.frames = frames;
+            this.stream = streamed ? new ArrayBlockingQueue<>(STREAM_CAPACITY) : null;
+        }
+
+        @Override
+        public void run() {
+            status = Status.RUNNING;
+            try {
+                SimulationEngine engine = new SimulationEngine(params, maxParticles, EngineOptions.serial());
+                List<Observer> observers = Observer.standard(params);
+                observers.forEach(engine::addObserver);
+                OutputSchedule schedule = new OutputSchedule(params.dt(), frames ? params.outputDt() : every);
+                while (!engine.isFinished() && engine.nextTime() <= maxTime) {
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                    double t = engine.nextTime();
+                    engine.step(engine.nextTick(), t);
+                    time = engine.nextTime();
+                    if (stream != null && schedule.isDue(t)) {
+                        stream.put(frames ? engine.snapshot() : line(t, engine.particleCount(), observers));
+                    }
+                }
+                Map<String, Double> result = new LinkedHashMap<>(ObservationSummary.collect(observers));
+                result.put(Objective.RUN_TIME, engine.nextTime());
+                result.put(Objective.RUN_FINISHED, engine.isFinished() ? 1.0 : 0.0);
+                synchronized (cache) {
+                    cache.put(params, result);
+                }
+                summary = result;
+                settle(Status.DONE);
+            } catch (InterruptedException e) {
+                settle(Status.CANCELLED);
+            } catch (IOException | RuntimeException e) {
+                error = e.toString();
+                settle(Status.FAILED);
+            }
+        }
+
+        private static String line(double t, int particles, List<Observer> observers) {
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("time", t);
+            line.put("particles", particles);
+            line.put("summary", ObservationSummary.collect(observers));
+            return Json.write(line);
+        }
+
+        // Settles the job with a summary from the cache.
+        void answer(Map<String, Double> cachedSummary) {
+            summary = cachedSummary;
+            time = cachedSummary.get(Objective.RUN_TIME);
+            cached = true;
+            settle(Status.DONE);
+        }
+
+        void cancel() {
+            if (task.cancel(true) && status == Status.QUEUED) {
+                // Never started, so run() will not settle it.
+                settle(Status.CANCELLED);
+            }
+        }
+
+        private void settle(Status outcome) {
+            settledAt = System.nanoTime();
+            status = outcome;
+        }
+
+        boolean isSettled() {
+            return status != Status.QUEUED && status != Status.RUNNING;
+        }
+
+        Map<String, Object> status() {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("id", id);
+            json.put("status", status.name());
+            json.put("key", ResultCache.key(params));
+            json.put("cached", cached);
+            json.put("time", time);
+            json.put("parameters", ParametersJson.write(params));
+            if (summary != null) {
+                json.put("summary", summary);
+            }
+            if (error != null) {
+                json.put("error", error);
+            }
+            return json;
+        }
+    }
+}
@@ -1,43 +1,320 @@
 package space;
 
-import model.Particle;
 import model.Vector2D;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
 
+/**
+ * Uniform grid over the corridor, rebuilt every tick: {@link #reset()}, one
+ * {@link #insert} per particle, then {@link #build()}.
+ * <p>
+ * Every {@link Layout} visits the particles of a cell by descending key, so all
+ * yield the same neighbour order. The key of a particle is its index unless given.
+ * <p>
+ * A grid can also cover a band of columns [firstColumn, firstColumn + cols) of a larger one
+ * with the same cell size: positions keep their global coordinates and land in the same
+ * cells as in the full grid, clamped to the band.
+ * <p>
+ * An {@link Layout#INCREMENTAL} grid is not rebuilt: it is filled once, then kept in step
+ * with {@link #place} and {@link #relink}, appending {@link #insert}s and {@link #removeIf},
+ * and only touches the cells of particles that changed cell.
+ */
 public final class CellGrid {
+
+    public enum Layout {
+        // Intrusive linked list per cell; inserts are O(1) and build() does nothing.
+        LINKED,
+        // Counting sort into one array in cell order; inserted indices must be 0..n-1.
+        SORTED,
+        // Sorted array of indices per cell kept across ticks, visited by descending index like
+        // LINKED; indices must be 0..n-1 and are inserted in increasing order.
+        INCREMENTAL
+    }
+
     private final double cellSize;
-    private final int cols, rows;
+    private final int firstColumn, cols, rows;
+    private final Layout layout;
     // Flat array storing the head index of each cell (‑1 if empty).
     private final int[] head;
     // Next‑pointer for each particle (initial length maxAgents)
     private int[] next;
+    // INCREMENTAL only: the indices in each cell, ascending, and how many there are; and
+    // scratch space for the new indices of removeIf.
+    private final int[][] members;
+    private final int[] counts;
+    private int[] renumbered;
+    // Position each particle was inserted (INCREMENTAL: last placed) at, for the cutoff test of neighbours().
+    private double[] px, py;
+    // SORTED and INCREMENTAL: cell of each particle. SORTED only: sort key of each particle, particles in cell order, and
+    // where each cell starts in 'order' (cellStart[cells] is the particle count).
+    private int[] cellOf, key, order;
+    private final int[] cellStart;
+    private int inserted;
+    // INCREMENTAL only: particles relinked into another cell since the last reset().
+    private long relinked;
 
     public CellGrid(double W, double H, double cellSize, int N) {
+        this(W, H, cellSize, N, Layout.LINKED);
+    }
+
+    public CellGrid(double W, double H, double cellSize, int N, Layout layout) {
+        this(0, columns(W, cellSize), H, cellSize, N, layout);
+    }
+
+    // The columns [firstColumn, firstColumn + columns) of a grid with this cell size.
+    public CellGrid(int firstColumn, int columns, double H, double cellSize, int N, Layout layout) {
         this.cellSize = cellSize;
-        cols = (int) Math.ceil(W / cellSize);
+        this.layout = layout;
+        this.firstColumn = firstColumn;
+        cols = columns;
         rows = (int) Math.ceil(H / cellSize);
-        head = new int[cols * rows];
-        next = new int[N];
+        int capacity = Math.max(1, N);
+        px = new double[capacity];
+        py = new double[capacity];
+        if (layout == Layout.LINKED) {
+            head = new int[cols * rows];
+            next = new int[capacity];
+            cellStart = null;
+            members = null;
+            counts = null;
+        } else if (layout == Layout.INCREMENTAL) {
+            head = null;
+            cellStart = null;
+            members = new int[cols * rows][];
+            counts = new int[cols * rows];
+            cellOf = new int[capacity];
+            renumbered = new int[capacity];
+        } else {
+            head = null;
+            members = null;
+            counts = null;
+            cellStart = new int[cols * rows + 1];
+            cellOf = new int[capacity];
+            key = new int[capacity];
+            order = new int[capacity];
+        }
         reset();
     }
 
-    // Must be called once every tick before any insert.
+    // Number of columns of a grid of width W.
+    public static int columns(double W, double cellSize) {
+        return (int) Math.ceil(W / cellSize);
+    }
+
+    public double cellSize() {
+        return cellSize;
+    }
+
+    public int firstColumn() {
+        return firstColumn;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public Layout layout() {
+        return layout;
+    }
+
+    // Must be called once every tick before any insert; an INCREMENTAL grid only needs it to start over.
     public void reset() {
-        Arrays.fill(head, -1);
+        if (layout == Layout.LINKED) {
+            Arrays.fill(head, -1);
+        } else if (layout == Layout.INCREMENTAL) {
+            Arrays.fill(counts, 0);
+            relinked = 0;
+        } else {
+            Arrays.fill(cellStart, 0);
+        }
+        inserted = 0;
     }
 
     public void insert(int index, Vector2D position) {
-        if (index >= next.length) {
-            int newCap = Math.max(index + 1, next.length * 2);
-            next = Arrays.copyOf(next, newCap);
+        insert(index, position.x(), position.y());
+    }
+
+    public void insert(int index, double x, double y) {
+        insert(index, x, y, index);
+    }
+
+    /**
+     * Inserts particle {@code index} with an explicit sort key. Only {@link Layout#SORTED}
+     * uses the key; a LINKED grid always orders by insertion, newest first. An
+     * {@link Layout#INCREMENTAL} grid takes the next index, {@link #size()}, only: a new
+     * particle has the highest index and is appended to its cell in O(1).
+     */
+    public void insert(int index, double x, double y, int sortKey) {
+        if (index >= px.length) {
+            grow(Math.max(index + 1, px.length * 2));
+        }
+        px[index] = x;
+        py[index] = y;
+        int cell = cellIndex(x, y);
+        if (layout == Layout.LINKED) {
+            next[index] = head[cell];
+            head[cell] = index;
+        } else if (layout == Layout.INCREMENTAL) {
+            if (index != inserted) {
+                throw new IllegalArgumentException("Expected particle " + inserted + ", got " + index);
+            }
+            add(index, cell);
+            inserted++;
+        } else {
+            cellOf[index] = cell;
+            key[index] = sortKey;
+            cellStart[cell]++;
+            inserted = Math.max(inserted, index + 1);
+        }
+    }
+
+    /**
+     * {@link Layout#INCREMENTAL} only: records where particle {@code index} is now.
+     * Only writes the particle's own slots, so the chunks of a pass can place their
+     * particles concurrently.
+     *
+     * @return the cell to {@link #relink} the particle into before the next query, or -1
+     * if it is still in the cell it is kept in
+     */
+    public int place(int index, double x, double y) {
+        px[index] = x;
+        py[index] = y;
+        int cell = cellIndex(x, y);
+        return cell == cellOf[index] ? -1 : cell;
+    }
+
+    /**
+     * {@link Layout#INCREMENTAL} only: moves a particle into the cell {@link #place} returned
+     * for it. Both cells are scanned and shifted by one slot rather than binary-searched:
+     * the crowded cells at a jammed entrance are where particles change cell, and there
+     * a scan's one mispredicted branch beats a search's seven.
+     */
+    public void relink(int index, int cell) {
+        int from = cellOf[index];
+        int[] old = members[from];
+        int count = --counts[from];
+        int at = 0;
+        while (old[at] != index) {
+            at++;
+        }
+        System.arraycopy(old, at + 1, old, at, count - at);
+        add(index, cell);
+        relinked++;
+    }
+
+    /**
+     * {@link Layout#INCREMENTAL} only: drops every particle of [0, size()) that
+     * {@code removed} accepts and renumbers the others like {@link model.ParticleStore#removeIf}
+     * does, so call it with the same predicate right before the store's compaction. Like
+     * the compaction it is one pass over the particles, then one over the cells;
+     * renumbering keeps every cell ascending.
+     */
+    public void removeIf(IntPredicate removed) {
+        int kept = 0;
+        for (int i = 0; i < inserted; i++) {
+            if (removed.test(i)) {
+                renumbered[i] = -1;
+            } else {
+                renumbered[i] = kept;
+                cellOf[kept] = cellOf[i];
+                px[kept] = px[i];
+                py[kept] = py[i];
+                kept++;
+            }
+        }
+        if (kept == inserted) {
+            return;
+        }
+        for (int c = 0; c < counts.length; c++) {
+            int[] cell = members[c];
+            int count = 0;
+            for (int k = 0; k < counts[c]; k++) {
+                int to = renumbered[cell[k]];
+                if (to != -1) {
+                    cell[count++] = to;
+                }
+            }
+            counts[c] = count;
+        }
+        inserted = kept;
+    }
+
+    // INCREMENTAL: particles tracked, i.e. the next index insert() takes.
+    public int size() {
+        return inserted;
+    }
+
+    // INCREMENTAL: particles moved to another cell since the last reset().
+    public long relinked() {
+        return relinked;
+    }
+
+    // Inserts i into 'cell', shifting the larger indices up one slot so the cell stays ascending.
+    private void add(int i, int cell) {
+        int[] cellMembers = members[cell];
+        int count = counts[cell];
+        if (cellMembers == null || count == cellMembers.length) {
+            cellMembers = members[cell] = Arrays.copyOf(cellMembers == null ? new int[0] : cellMembers,
+                    Math.max(4, 2 * count));
+        }
+        int at = count;
+        while (at > 0 && cellMembers[at - 1] > i) {
+            cellMembers[at] = cellMembers[at - 1];
+            at--;
         }
-        int cell = getCellIndex(position);
-        next[index] = head[cell];
-        head[cell] = index;
+        cellMembers[at] = i;
+        counts[cell] = count + 1;
+        cellOf[i] = cell;
+    }
+
+    /**
+     * Finishes the inserts of this tick. For {@link Layout#SORTED} this is the counting
+     * sort: a prefix sum over the cell counts, then a scatter that fills every cell from
+     * its end, which leaves it by descending index. Cells are then insertion-sorted by
+     * descending key, which only moves anything if keys and indices disagree.
+     */
+    public void build() {
+        if (layout != Layout.SORTED) {
+            return;
+        }
+        int cells = cols * rows;
+        for (int c = 1; c < cells; c++) {
+            cellStart[c] += cellStart[c - 1];
+        }
+        for (int i = 0; i < inserted; i++) {
+            order[--cellStart[cellOf[i]]] = i;
+        }
+        cellStart[cells] = inserted;
+        for (int c = 0; c < cells; c++) {
+            int from = cellStart[c], to = cellStart[c + 1];
+            for (int k = from + 1; k < to; k++) {
+                int moving = order[k];
+                int movingKey = key[moving];
+                int at = k - 1;
+                while (at >= from && key[order[at]] < movingKey) {
+                    order[at + 1] = order[at];
+                    at--;
+                }
+                order[at + 1] = moving;
+            }
+        }
+    }
+
+    /**
+     * {@link Layout#SORTED} only: the inserted indices in cell order, as left by the last
+     * {@link #build()}. The array is owned by the grid and only its first n entries are used.
+     */
+    public int[] cellOrder() {
+        if (layout != Layout.SORTED) {
+            throw new IllegalStateException("Only a SORTED grid keeps its particles in cell order");
+        }
+        return order;
     }
 
     /*
@@ -45,28 +322,162 @@ public final class CellGrid {
      * 'IntConsumer' is invoked for each neighbor index.
      */
     public void forEachNeighbour(Vector2D position, IntConsumer consumer) {
-        int cellX = (int) (position.x() / cellSize), cellY = (int) (position.y() / cellSize);
-        for (int deltaY = -1; deltaY <= 1; deltaY++) {
-            int neighborY = cellY + deltaY;
-            if (neighborY < 0 || neighborY >= rows) {
+        forEachNeighbour(position.x(), position.y(), consumer);
+    }
+
+    public void forEachNeighbour(double x, double y, IntConsumer consumer) {
+        int cellX = (int) (x / cellSize) - firstColumn, cellY = (int) (y / cellSize);
+        int fromX = Math.max(cellX - 1, 0), toX = Math.min(cellX + 1, cols - 1);
+        if (fromX > toX) {
+            return;
+        }
+        for (int neighborY = Math.max(cellY - 1, 0); neighborY <= Math.min(cellY + 1, rows - 1); neighborY++) {
+            if (layout == Layout.SORTED) {
+                // The three cells of a row are adjacent in 'order': one linear scan.
+                int rowStart = neighborY * cols;
+                for (int k = cellStart[rowStart + fromX], end = cellStart[rowStart + toX + 1]; k < end; k++) {
+                    consumer.accept(order[k]);
+                }
                 continue;
             }
-            for (int deltaX = -1; deltaX <= 1; deltaX++) {
-                int neighborX = cellX + deltaX;
-                if (neighborX < 0 || neighborX >= cols) {
+            for (int neighborX = fromX; neighborX <= toX; neighborX++) {
+                int cell = neighborY * cols + neighborX;
+                if (layout == Layout.INCREMENTAL) {
+                    for (int k = counts[cell] - 1; k >= 0; k--) {
+                        consumer.accept(members[cell][k]);
+                    }
                     continue;
                 }
-                for (int agentIdx = head[neighborY * cols + neighborX]; agentIdx != -1; agentIdx = next[agentIdx]) {
+                for (int agentIdx = head[cell]; agentIdx != -1; agentIdx = next[agentIdx]) {
                     consumer.accept(agentIdx);
                 }
             }
         }
     }
 
-    private int getCellIndex(Vector2D p) {
-        int cx = Math.min(Math.max((int) (p.x() / cellSize), 0), cols - 1);
-        int cy = Math.min(Math.max((int) (p.y() / cellSize), 0), rows - 1);
+    /**
+     * Writes the indices of the particles in the 3×3 cells around (x, y) into
+     * {@code out[offset..]}, in the same order as {@link #forEachNeighbour}, skipping
+     * {@code self} (pass -1 to keep every particle) and, unless {@code cutoff} is infinite,
+     * every particle farther than {@code cutoff} from (x, y).
+     * <p>
+     * Returns the number of neighbours found. If that exceeds {@code out.length - offset} only
+     * the first ones were written; grow the buffer and query again.
+     */
+    public int neighbours(int self, double x, double y, double cutoff, int[] out, int offset) {
+        int cellX = (int) (x / cellSize) - firstColumn, cellY = (int) (y / cellSize);
+        return collect(self, x, y, cutoff,
+                Math.max(cellX - 1, 0), Math.min(cellX + 1, cols - 1),
+                Math.max(cellY - 1, 0), Math.min(cellY + 1, rows - 1), out, offset);
+    }
+
+    /**
+     * Like {@link #neighbours} but for every particle within {@code radius} of (x, y), however
+     * many cells that spans. Particles outside the grid are found in the border cells they
+     * were inserted into.
+     */
+    public int within(int self, double x, double y, double radius, int[] out, int offset) {
+        return collect(self, x, y, radius, clamp(x - radius, firstColumn, cols), clamp(x + radius, firstColumn, cols),
+                clamp(y - radius, 0, rows), clamp(y + radius, 0, rows), out, offset);
+    }
+
+    // Cell coordinate of c relative to 'first', limited to [0, cells).
+    private int clamp(double c, int first, int cells) {
+        return (int) Math.min(Math.max(Math.floor(c / cellSize) - first, 0), cells - 1);
+    }
+
+    // Particles of the cell block [fromX, toX] × [fromY, toY], row by row.
+    private int collect(int self, double x, double y, double cutoff, int fromX, int toX, int fromY, int toY,
+                        int[] out, int offset) {
+        if (fromX > toX) {
+            return 0;
+        }
+        boolean filter = cutoff < Double.POSITIVE_INFINITY;
+        double cutoffSq = cutoff * cutoff;
+        int room = out.length - offset;
+        int count = 0;
+        for (int neighborY = fromY; neighborY <= toY; neighborY++) {
+            if (layout == Layout.SORTED) {
+                int rowStart = neighborY * cols;
+                for (int k = cellStart[rowStart + fromX], end = cellStart[rowStart + toX + 1]; k < end; k++) {
+                    int agentIdx = order[k];
+                    if (agentIdx == self) {
+                        continue;
+                    }
+                    if (filter) {
+                        double dx = px[agentIdx] - x, dy = py[agentIdx] - y;
+                        if (dx * dx + dy * dy > cutoffSq) {
+                            continue;
+                        }
+                    }
+                    if (count < room) {
+                        out[offset + count] = agentIdx;
+                    }
+                    count++;
+                }
+                continue;
+            }
+            for (int neighborX = fromX; neighborX <= toX; neighborX++) {
+                int cell = neighborY * cols + neighborX;
+                if (layout == Layout.INCREMENTAL) {
+                    int[] cellMembers = members[cell];
+                    for (int k = counts[cell] - 1; k >= 0; k--) {
+                        int agentIdx = cellMembers[k];
+                        if (agentIdx == self) {
+                            continue;
+                        }
+                        if (filter) {
+                            double dx = px[agentIdx] - x, dy = py[agentIdx] - y;
+                            if (dx * dx + dy * dy > cutoffSq) {
+                                continue;
+                            }
+                        }
+                        if (count < room) {
+                            out[offset + count] = agentIdx;
+                        }
+                        count++;
+                    }
+                    continue;
+                }
+                for (int agentIdx = head[cell]; agentIdx != -1; agentIdx = next[agentIdx]) {
+                    if (agentIdx == self) {
+                        continue;
+                    }
+                    if (filter) {
+                        double dx = px[agentIdx] - x, dy = py[agentIdx] - y;
+                        if (dx * dx + dy * dy > cutoffSq) {
+                            continue;
+                        }
+                    }
+                    if (count < room) {
+                        out[offset + count] = agentIdx;
+                    }
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    // Row-major index of the cell containing (x, y); points outside the grid map to the nearest border cell.
+    public int cellIndex(double x, double y) {
+        int cx = Math.min(Math.max((int) (x / cellSize) - firstColumn, 0), cols - 1);
+        int cy = Math.min(Math.max((int) (y / cellSize), 0), rows - 1);
         return cy * cols + cx;
     }
-}
 
+    private void grow(int capacity) {
+        px = Arrays.copyOf(px, capacity);
+        py = Arrays.copyOf(py, capacity);
+        if (layout == Layout.LINKED) {
+            next = Arrays.copyOf(next, capacity);
+        } else if (layout == Layout.INCREMENTAL) {
+            cellOf = Arrays.copyOf(cellOf, capacity);
+            renumbered = Arrays.copyOf(renumbered, capacity);
+        } else {
+            cellOf = Arrays.copyOf(cellOf, capacity);
+            key = Arrays.copyOf(key, capacity);
+            order = Arrays.copyOf(order, capacity);
+        }
+    }
+}
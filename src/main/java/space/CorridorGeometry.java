@@ -0,0 +1,48 @@
+package space;
+
+import model.Parameters;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * The plain corridor: side walls at y = 0 and y = W, targets straight along x at the ends.
+ * Closed-form, and exactly the rules of the original model.
+ */
+public final class CorridorGeometry implements Geometry {
+    private final double L, W, rMin;
+
+    public CorridorGeometry(Parameters p) {
+        this.L = p.corridorLength();
+        this.W = p.corridorWidth();
+        this.rMin = p.rMin();
+    }
+
+    @Override
+    public void targetDirection(double x, double y, int goalSign, double[] out) {
+        double tx = (goalSign > 0 ? L : 0) - x;
+        out[0] = tx == 0.0 ? tx : tx > 0 ? 1.0 : -1.0;
+        out[1] = 0.0;
+    }
+
+    @Override
+    public double nearestWall(double x, double y, double[] out) {
+        double dBottom = y;
+        boolean closerToBottom = dBottom < W - dBottom;
+        double wy = (closerToBottom ? 0.0 : W) - y;
+        double wLen = Math.sqrt(wy * wy);
+        out[0] = 0.0;
+        out[1] = wLen == 0.0 ? wy : wy / wLen;
+        return closerToBottom ? dBottom : W - dBottom;
+    }
+
+    @Override
+    public void confine(double x, double y, double r, double[] out) {
+        out[0] = x;
+        out[1] = Math.max(r, Math.min(W - r, y));
+    }
+
+    @Override
+    public double spawnY(boolean leftEnd, RandomGenerator rng) {
+        return rng.nextDouble(rMin, W - rMin);
+    }
+}
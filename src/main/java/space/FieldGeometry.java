@@ -0,0 +1,488 @@
+package space;
+
+import model.Layout;
+import model.Parameters;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+import java.util.stream.DoubleStream;
+
+/**
+ * Geometry of a {@link Layout} with obstacles or doors, sampled once on a raster of
+ * {@link Layout#resolution()} cells covering the corridor and a margin beyond each end.
+ * <p>
+ * Walls are segments. Each raster cell lists the few segments that can be nearest to any
+ * point in it: those within one cell diagonal of the nearest one at its centre. Distances
+ * and normals are then exact, and every query only tests those few. The lists are built
+ * through a coarse bucket index of the segments, searched ring by ring from each cell.
+ * <p>
+ * The way to each end is a navigation field: arrival times of a front started past that
+ * end and marched (fast marching, first order) through every cell farther than rMin from
+ * a wall. Each cell stores the unit direction of steepest descent. Queries interpolate the
+ * directions bilinearly and fall back to straight along x where no field is defined.
+ */
+public final class FieldGeometry implements Geometry {
+    // How far the raster and the side walls reach beyond each end; spawns start up to 0.5 m out.
+    static final double MARGIN = 1.0;
+    // Segments are indexed in square buckets of this many raster cells a side.
+    private static final int BUCKET_CELLS = 16;
+    // Pushes confine() makes before giving up, e.g. in a corner between two walls.
+    private static final int CONFINE_PUSHES = 3;
+
+    private final double L, W, rMin, h, x0;
+    private final int nx, ny;
+    // Wall segments.
+    private final double[] sx1, sy1, sx2, sy2;
+    // Candidate segments of cell c: candidates[candidateStart[c] .. candidateStart[c + 1]).
+    private final int[] candidateStart, candidates;
+    // Navigation directions per cell towards the right and the left end; zero where undefined.
+    private final float[] rightX, rightY, leftX, leftY;
+    // Lateral intervals spawns are drawn from at each end, as [from, to) pairs; empty when the end is open.
+    private final double[] leftSpawns, rightSpawns;
+
+    public FieldGeometry(Parameters p) {
+        Layout layout = p.layout();
+        this.L = p.corridorLength();
+        this.W = p.corridorWidth();
+        this.rMin = p.rMin();
+        this.h = layout.resolution();
+        this.x0 = -MARGIN;
+        this.nx = (int) Math.ceil((L + 2 * MARGIN) / h);
+        this.ny = Math.max(1, (int) Math.ceil(W / h));
+
+        double[] walls = walls(layout);
+        int m = walls.length / 4;
+        sx1 = new double[m];
+        sy1 = new double[m];
+        sx2 = new double[m];
+        sy2 = new double[m];
+        for (int k = 0; k < m; k++) {
+            sx1[k] = walls[4 * k];
+            sy1[k] = walls[4 * k + 1];
+            sx2[k] = walls[4 * k + 2];
+            sy2[k] = walls[4 * k + 3];
+        }
+        leftSpawns = spawnIntervals(layout, Layout.End.LEFT);
+        rightSpawns = spawnIntervals(layout, Layout.End.RIGHT);
+
+        candidateStart = new int[nx * ny + 1];
+        double[] distance = new double[nx * ny];
+        candidates = indexCandidates(distance);
+
+        double[] time = new double[nx * ny];
+        rightX = new float[nx * ny];
+        rightY = new float[nx * ny];
+        march(distance, true, time);
+        directions(time, rightX, rightY);
+        leftX = new float[nx * ny];
+        leftY = new float[nx * ny];
+        march(distance, false, time);
+        directions(time, leftX, leftY);
+    }
+
+    @Override
+    public void targetDirection(double x, double y, int goalSign, double[] out) {
+        float[] dx = goalSign > 0 ? rightX : leftX, dy = goalSign > 0 ? rightY : leftY;
+        // Bilinear over the four cell centres around (x, y).
+        double fx = (x - x0) / h - 0.5, fy = y / h - 0.5;
+        int ix = (int) Math.floor(fx), iy = (int) Math.floor(fy);
+        double tx = fx - ix, ty = fy - iy;
+        double ax = 0, ay = 0;
+        for (int k = 0; k < 4; k++) {
+            int cx = Math.min(Math.max(ix + (k & 1), 0), nx - 1), cy = Math.min(Math.max(iy + (k >> 1), 0), ny - 1);
+            double w = ((k & 1) == 0 ? 1 - tx : tx) * ((k >> 1) == 0 ? 1 - ty : ty);
+            int c = cy * nx + cx;
+            ax += w * dx[c];
+            ay += w * dy[c];
+        }
+        double len = Math.sqrt(ax * ax + ay * ay);
+        if (len == 0.0) {
+            out[0] = goalSign > 0 ? 1.0 : -1.0;
+            out[1] = 0.0;
+            return;
+        }
+        out[0] = ax / len;
+        out[1] = ay / len;
+    }
+
+    @Override
+    public double nearestWall(double x, double y, double[] out) {
+        int c = cell(x, y);
+        double best = Double.POSITIVE_INFINITY, qx = x, qy = y;
+        for (int k = candidateStart[c]; k < candidateStart[c + 1]; k++) {
+            int s = candidates[k];
+            double t = closest(s, x, y);
+            double px = sx1[s] + t * (sx2[s] - sx1[s]), py = sy1[s] + t * (sy2[s] - sy1[s]);
+            double d = Math.hypot(px - x, py - y);
+            if (d < best) {
+                best = d;
+                qx = px;
+                qy = py;
+            }
+        }
+        out[0] = best == 0.0 ? 0.0 : (qx - x) / best;
+        out[1] = best == 0.0 ? 0.0 : (qy - y) / best;
+        return best;
+    }
+
+    @Override
+    public void confine(double x, double y, double r, double[] out) {
+        for (int push = 0; push < CONFINE_PUSHES; push++) {
+            double d = nearestWall(x, y, out);
+            if (d >= r || d == 0.0) {
+                break;
+            }
+            x -= out[0] * (r - d);
+            y -= out[1] * (r - d);
+        }
+        out[0] = x;
+        out[1] = y;
+    }
+
+    @Override
+    public double spawnY(boolean leftEnd, RandomGenerator rng) {
+        double[] intervals = leftEnd ? leftSpawns : rightSpawns;
+        if (intervals.length == 0) {
+            return rng.nextDouble(rMin, W - rMin);
+        }
+        double total = 0;
+        for (int k = 0; k < intervals.length; k += 2) {
+            total += intervals[k + 1] - intervals[k];
+        }
+        double u = rng.nextDouble(0, total);
+        for (int k = 0; k < intervals.length - 2; k += 2) {
+            double width = intervals[k + 1] - intervals[k];
+            if (u < width) {
+                return intervals[k] + u;
+            }
+            u -= width;
+        }
+        return Math.min(intervals[intervals.length - 2] + u, Math.nextDown(intervals[intervals.length - 1]));
+    }
+
+    // Side walls reaching MARGIN past both ends, the layout's walls, and each end wall around its doors.
+    private double[] walls(Layout layout) {
+        double xEnd = L + MARGIN;
+        double[] walls = new double[4 * (2 + layout.walls().size() + 2 * (layout.doors().size() + 1))];
+        int n = 0;
+        for (double[] w : new double[][]{{x0, 0, xEnd, 0}, {x0, W, xEnd, W}}) {
+            System.arraycopy(w, 0, walls, 4 * n++, 4);
+        }
+        for (Layout.Wall w : layout.walls()) {
+            System.arraycopy(new double[]{w.x1(), w.y1(), w.x2(), w.y2()}, 0, walls, 4 * n++, 4);
+        }
+        for (Layout.End end : Layout.End.values()) {
+            double[] doors = doors(layout, end);
+            if (doors.length == 0) {
+                continue;
+            }
+            double x = end == Layout.End.LEFT ? 0 : L;
+            double from = 0;
+            for (int k = 0; k <= doors.length; k += 2) {
+                double to = k < doors.length ? doors[k] : W;
+                if (to > from) {
+                    System.arraycopy(new double[]{x, from, x, to}, 0, walls, 4 * n++, 4);
+                }
+                if (k < doors.length) {
+                    from = Math.max(from, doors[k + 1]);
+                }
+            }
+        }
+        return Arrays.copyOf(walls, 4 * n);
+    }
+
+    // The doors of one end as sorted [from, to) pairs.
+    private double[] doors(Layout layout, Layout.End end) {
+        return layout.doors().stream()
+                .filter(d -> d.end() == end)
+                .sorted((a, b) -> Double.compare(a.from(), b.from()))
+                .flatMapToDouble(d -> {
+                    if (d.from() < 0 || d.to() > W) {
+                        throw new IllegalArgumentException("Door " + d + " lies outside the corridor width " + W);
+                    }
+                    return DoubleStream.of(d.from(), d.to());
+                })
+                .toArray();
+    }
+
+    // Where a pedestrian of radius up to rMin fits through the doors of an end.
+    private double[] spawnIntervals(Layout layout, Layout.End end) {
+        double[] doors = doors(layout, end);
+        double[] intervals = new double[doors.length];
+        int n = 0;
+        for (int k = 0; k < doors.length; k += 2) {
+            double from = Math.max(doors[k] + rMin, rMin), to = Math.min(doors[k + 1] - rMin, W - rMin);
+            if (to > from) {
+                intervals[n++] = from;
+                intervals[n++] = to;
+            }
+        }
+        if (doors.length > 0 && n == 0) {
+            throw new IllegalArgumentException("No door at the " + end + " end is wider than 2 rMin");
+        }
+        return Arrays.copyOf(intervals, n);
+    }
+
+    /**
+     * Fills candidateStart and returns the candidate lists, writing the distance from each
+     * cell centre to the nearest wall into {@code distance}.
+     */
+    private int[] indexCandidates(double[] distance) {
+        int m = sx1.length;
+        double B = BUCKET_CELLS * h;
+        int bx = (nx + BUCKET_CELLS - 1) / BUCKET_CELLS, by = (ny + BUCKET_CELLS - 1) / BUCKET_CELLS;
+        // Bucket b holds the segments bucketed[bucketStart[b] .. bucketStart[b + 1]), by bounding box.
+        int[] bucketStart = new int[bx * by + 1];
+        for (int pass = 0; pass < 2; pass++) {
+            int[] fill = pass == 0 ? null : Arrays.copyOf(bucketStart, bx * by);
+            int[] bucketed = pass == 0 ? null : new int[bucketStart[bx * by]];
+            for (int s = 0; s < m; s++) {
+                int fromX = bucket(Math.min(sx1[s], sx2[s]) - x0, B, bx), toX = bucket(Math.max(sx1[s], sx2[s]) - x0, B, bx);
+                int fromY = bucket(Math.min(sy1[s], sy2[s]), B, by), toY = bucket(Math.max(sy1[s], sy2[s]), B, by);
+                for (int j = fromY; j <= toY; j++) {
+                    for (int i = fromX; i <= toX; i++) {
+                        if (pass == 0) {
+                            bucketStart[j * bx + i + 1]++;
+                        } else {
+                            bucketed[fill[j * bx + i]++] = s;
+                        }
+                    }
+                }
+            }
+            if (pass == 0) {
+                for (int b = 0; b < bx * by; b++) {
+                    bucketStart[b + 1] += bucketStart[b];
+                }
+            } else {
+                return collectCandidates(distance, B, bx, by, bucketStart, bucketed);
+            }
+        }
+        throw new AssertionError();
+    }
+
+    private int[] collectCandidates(double[] distance, double B, int bx, int by, int[] bucketStart, int[] bucketed) {
+        double margin = h * Math.sqrt(2);
+        int[] seen = new int[sx1.length];
+        Arrays.fill(seen, -1);
+        int[] found = new int[16];
+        double[] foundDistance = new double[16];
+        int[] out = new int[Math.max(16, nx * ny)];
+        int total = 0;
+        for (int c = 0; c < nx * ny; c++) {
+            double cx = x0 + (c % nx + 0.5) * h, cy = (c / nx + 0.5) * h;
+            int ib = Math.min((c % nx) / BUCKET_CELLS, bx - 1), jb = Math.min((c / nx) / BUCKET_CELLS, by - 1);
+            int count = 0;
+            double best = Double.POSITIVE_INFINITY;
+            for (int ring = 0; ring <= Math.max(bx, by); ring++) {
+                for (int j = Math.max(jb - ring, 0); j <= Math.min(jb + ring, by - 1); j++) {
+                    for (int i = Math.max(ib - ring, 0); i <= Math.min(ib + ring, bx - 1); i++) {
+                        if (Math.max(Math.abs(i - ib), Math.abs(j - jb)) != ring) {
+                            continue;
+                        }
+                        for (int k = bucketStart[j * bx + i]; k < bucketStart[j * bx + i + 1]; k++) {
+                            int s = bucketed[k];
+                            if (seen[s] == c) {
+                                continue;
+                            }
+                            seen[s] = c;
+                            double t = closest(s, cx, cy);
+                            double d = Math.hypot(sx1[s] + t * (sx2[s] - sx1[s]) - cx, sy1[s] + t * (sy2[s] - sy1[s]) - cy);
+                            if (count == found.length) {
+                                found = Arrays.copyOf(found, 2 * count);
+                                foundDistance = Arrays.copyOf(foundDistance, 2 * count);
+                            }
+                            found[count] = s;
+                            foundDistance[count++] = d;
+                            best = Math.min(best, d);
+                        }
+                    }
+                }
+                // Every segment not seen yet is at least ring * B away.
+                if (ring * B >= best + margin) {
+                    break;
+                }
+            }
+            distance[c] = best;
+            candidateStart[c] = total;
+            for (int k = 0; k < count; k++) {
+                if (foundDistance[k] <= best + margin) {
+                    if (total == out.length) {
+                        out = Arrays.copyOf(out, 2 * total);
+                    }
+                    out[total++] = found[k];
+                }
+            }
+        }
+        candidateStart[nx * ny] = total;
+        return Arrays.copyOf(out, total);
+    }
+
+    /**
+     * Arrival times of a front of unit speed started in every free cell past the right
+     * (or left) end, through the cells at least rMin from any wall; infinite elsewhere.
+     */
+    private void march(double[] distance, boolean right, double[] time) {
+        int cells = nx * ny;
+        Arrays.fill(time, Double.POSITIVE_INFINITY);
+        boolean[] known = new boolean[cells];
+        CellHeap heap = new CellHeap(cells);
+        for (int c = 0; c < cells; c++) {
+            double x = x0 + (c % nx + 0.5) * h;
+            if (distance[c] >= rMin && (right ? x >= L : x <= 0)) {
+                time[c] = 0;
+                heap.push(c, 0);
+            }
+        }
+        while (!heap.isEmpty()) {
+            int c = heap.pop();
+            if (known[c]) {
+                continue;
+            }
+            known[c] = true;
+            int i = c % nx, j = c / nx;
+            for (int k = 0; k < 4; k++) {
+                int ni = i + (k == 0 ? -1 : k == 1 ? 1 : 0), nj = j + (k == 2 ? -1 : k == 3 ? 1 : 0);
+                if (ni < 0 || ni >= nx || nj < 0 || nj >= ny) {
+                    continue;
+                }
+                int n = nj * nx + ni;
+                if (known[n] || distance[n] < rMin) {
+                    continue;
+                }
+                double t = arrival(time, known, ni, nj);
+                if (t < time[n]) {
+                    time[n] = t;
+                    heap.push(n, t);
+                }
+            }
+        }
+    }
+
+    // First-order upwind solution of |grad T| = 1 at cell (i, j) from its known neighbours.
+    private double arrival(double[] time, boolean[] known, int i, int j) {
+        double a = Math.min(knownTime(time, known, i - 1, j), knownTime(time, known, i + 1, j));
+        double b = Math.min(knownTime(time, known, i, j - 1), knownTime(time, known, i, j + 1));
+        if (Math.abs(a - b) >= h) {
+            return Math.min(a, b) + h;
+        }
+        return (a + b + Math.sqrt(2 * h * h - (a - b) * (a - b))) / 2;
+    }
+
+    private double knownTime(double[] time, boolean[] known, int i, int j) {
+        if (i < 0 || i >= nx || j < 0 || j >= ny) {
+            return Double.POSITIVE_INFINITY;
+        }
+        int c = j * nx + i;
+        return known[c] ? time[c] : Double.POSITIVE_INFINITY;
+    }
+
+    // Unit direction of steepest descent of the arrival times, per cell; zero at the targets and where unreached.
+    private void directions(double[] time, float[] dx, float[] dy) {
+        for (int j = 0; j < ny; j++) {
+            for (int i = 0; i < nx; i++) {
+                int c = j * nx + i;
+                double t = time[c];
+                if (t == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+                double ax = descent(t, i > 0 ? time[c - 1] : Double.POSITIVE_INFINITY,
+                        i + 1 < nx ? time[c + 1] : Double.POSITIVE_INFINITY);
+                double ay = descent(t, j > 0 ? time[c - nx] : Double.POSITIVE_INFINITY,
+                        j + 1 < ny ? time[c + nx] : Double.POSITIVE_INFINITY);
+                double len = Math.sqrt(ax * ax + ay * ay);
+                if (len > 0) {
+                    dx[c] = (float) (ax / len);
+                    dy[c] = (float) (ay / len);
+                }
+            }
+        }
+    }
+
+    // Step along one axis towards the lower of the two neighbours, if it is lower than t.
+    private static double descent(double t, double before, double after) {
+        if (before < after) {
+            return before < t ? -(t - before) : 0;
+        }
+        return after < t ? t - after : 0;
+    }
+
+    // Parameter in [0, 1] of the point of segment s closest to (x, y).
+    private double closest(int s, double x, double y) {
+        double ex = sx2[s] - sx1[s], ey = sy2[s] - sy1[s];
+        double len2 = ex * ex + ey * ey;
+        if (len2 == 0) {
+            return 0;
+        }
+        return Math.min(Math.max(((x - sx1[s]) * ex + (y - sy1[s]) * ey) / len2, 0), 1);
+    }
+
+    private int cell(double x, double y) {
+        int i = Math.min(Math.max((int) Math.floor((x - x0) / h), 0), nx - 1);
+        int j = Math.min(Math.max((int) Math.floor(y / h), 0), ny - 1);
+        return j * nx + i;
+    }
+
+    private static int bucket(double v, double B, int buckets) {
+        return (int) Math.min(Math.max(Math.floor(v / B), 0), buckets - 1);
+    }
+
+    // Binary min-heap of cells by arrival time; a cell may be pushed again with a lower time.
+    private static final class CellHeap {
+        private int[] cells;
+        private double[] keys;
+        private int size = 0;
+
+        CellHeap(int capacity) {
+            cells = new int[Math.max(16, capacity)];
+            keys = new double[cells.length];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(int cell, double key) {
+            if (size == cells.length) {
+                cells = Arrays.copyOf(cells, 2 * size);
+                keys = Arrays.copyOf(keys, 2 * size);
+            }
+            int at = size++;
+            while (at > 0) {
+                int parent = (at - 1) >>> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                cells[at] = cells[parent];
+                keys[at] = keys[parent];
+                at = parent;
+            }
+            cells[at] = cell;
+            keys[at] = key;
+        }
+
+        int pop() {
+            int top = cells[0];
+            int cell = cells[--size];
+            double key = keys[size];
+            int at = 0;
+            while (true) {
+                int child = 2 * at + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (keys[child] >= key) {
+                    break;
+                }
+                cells[at] = cells[child];
+                keys[at] = keys[child];
+                at = child;
+            }
+            cells[at] = cell;
+            keys[at] = key;
+            return top;
+        }
+    }
+}
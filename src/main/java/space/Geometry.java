@@ -0,0 +1,41 @@
+package space;
+
+import model.Parameters;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Walls and targets of the walkable area, as the movement rules query them once per
+ * pedestrian and step. Every query costs O(1) however many walls there are.
+ * <p>
+ * Pedestrians walk to the right end if their goal sign is positive, else to the left one,
+ * and enter just outside the end they start from.
+ */
+public interface Geometry {
+
+    /**
+     * Writes the unit direction of the shortest way from (x, y) to the exits of
+     * {@code goalSign} into {@code out[0]}, {@code out[1]}; zeros at a target.
+     */
+    void targetDirection(double x, double y, int goalSign, double[] out);
+
+    /**
+     * Returns the distance from (x, y) to the nearest wall and writes the unit vector from
+     * (x, y) towards that wall into {@code out[0]}, {@code out[1]} (zeros on the wall).
+     */
+    double nearestWall(double x, double y, double[] out);
+
+    /**
+     * Writes where a disc of radius {@code r} at (x, y) ends up once pushed out of the walls
+     * it overlaps into {@code out[0]}, {@code out[1]}.
+     */
+    void confine(double x, double y, double r, double[] out);
+
+    // Lateral position of a pedestrian entering at the left or right end.
+    double spawnY(boolean leftEnd, RandomGenerator rng);
+
+    // The geometry of p's layout: analytic for the plain corridor, sampled fields otherwise.
+    static Geometry of(Parameters p) {
+        return p.layout().isCorridor() ? new CorridorGeometry(p) : new FieldGeometry(p);
+    }
+}
@@ -0,0 +1,89 @@
+"""Reader for the binary frame files written by io.BinaryFrameWriter.
+
+Layout (little-endian):
+
+    header, 64 bytes
+        0  char[8]  magic "PEDFRAME"
+        8  int32    format version (1)
+       12  int32    bytes per value: 4 (float32) or 8 (float64)
+       16  int32    flags, bit 0: frame blocks are deflate-compressed
+       24  float64  dt
+       32  int64    frame count
+       40  int64    offset of the frame index
+    frame block of n particles, 8-byte aligned
+        int32[n] id, int32[n] goalSign, value[n] x, y, vx, vy, radius
+    frame index, 40 bytes per frame
+        int64 tick, float64 time, int64 offset, int32 n, int32 stored bytes,
+        int32 spawned left, int32 spawned right
+
+Uncompressed files are memory-mapped, so opening one costs nothing and each
+frame is a zero-copy view.
+
+Usage:
+    frames = BinaryFrames("output/run_8_1.bin")
+    for t, f in frames:            # f["x"], f["id"], ... are numpy arrays
+        ...
+    frames.to_dataframe()          # same columns as the CSV output
+"""
+from __future__ import annotations
+
+import zlib
+from pathlib import Path
+
+import numpy as np
+
+HEADER = np.dtype([
+    ("magic", "S8"), ("version", "<i4"), ("value_bytes", "<i4"), ("flags", "<i4"),
+    ("reserved", "<i4"), ("dt", "<f8"), ("frames", "<i8"), ("index_offset", "<i8"),
+])
+INDEX = np.dtype([
+    ("tick", "<i8"), ("time", "<f8"), ("offset", "<i8"), ("n", "<i4"),
+    ("stored", "<i4"), ("spawned_left", "<i4"), ("spawned_right", "<i4"),
+])
+VALUE_COLUMNS = ("x", "y", "vx", "vy", "radius")
+
+
+class BinaryFrames:
+    def __init__(self, path: str | Path):
+        self.path = Path(path)
+        header = np.fromfile(self.path, dtype=HEADER, count=1)[0]
+        if header["magic"] != b"PEDFRAME":
+            raise ValueError(f"{path} is not a binary frame file")
+        self.dt = float(header["dt"])
+        self.compressed = bool(header["flags"] & 1)
+        self.value_dtype = np.dtype("<f4" if header["value_bytes"] == 4 else "<f8")
+        self.index = np.memmap(self.path, dtype=INDEX, mode="r",
+                               offset=int(header["index_offset"]), shape=(int(header["frames"]),))
+        self._raw = None if self.compressed else np.memmap(self.path, dtype=np.uint8, mode="r")
+
+    def __len__(self) -> int:
+        return len(self.index)
+
+    def frame(self, k: int) -> dict:
+        e = self.index[k]
+        n, offset = int(e["n"]), int(e["offset"])
+        if self.compressed:
+            with open(self.path, "rb") as fh:
+                fh.seek(offset)
+                block = np.frombuffer(zlib.decompress(fh.read(int(e["stored"]))), dtype=np.uint8)
+        else:
+            block = self._raw[offset:offset + n * (8 + 5 * self.value_dtype.itemsize)]
+        ints = block[:8 * n].view("<i4")
+        values = block[8 * n:].view(self.value_dtype).reshape(5, n)
+        out = {"time": float(e["time"]), "id": ints[:n], "goalSign": ints[n:]}
+        out.update(zip(VALUE_COLUMNS, values))
+        return out
+
+    def __iter__(self):
+        for k in range(len(self)):
+            f = self.frame(k)
+            yield f["time"], f
+
+    def to_dataframe(self):
+        import pandas as pd
+        parts = []
+        for t, f in self:
+            df = pd.DataFrame({c: f[c] for c in ("id", *VALUE_COLUMNS, "goalSign")})
+            df.insert(0, "time", t)
+            parts.append(df)
+        return pd.concat(parts, ignore_index=True)